@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.storage.LongSortedSet;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds edgeCount like/friend edges spread over edgeCount / EDGES_PER_OWNER owners, either in
+ * boxed HashSets or in LongSortedSets, and prints the heap retained by them per edge.
+ * Run with -prof gc to also see the allocation caused by growing the sets.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class AdjacencyFootprintBenchmark {
+
+    private static final int EDGES_PER_OWNER = 100;
+
+    @Param({"10000000"})
+    int edgeCount;
+
+    @Param({"HashSet", "LongSortedSet"})
+    String implementation;
+
+    private Set<Long>[] owners;
+    private long heapBefore;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        owners = null;
+        heapBefore = usedHeap();
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Object build() {
+        int ownerCount = edgeCount / EDGES_PER_OWNER;
+        owners = new Set[ownerCount];
+        for (int owner = 0; owner < ownerCount; owner++) {
+            Set<Long> set = "HashSet".equals(implementation) ? new HashSet<>() : new LongSortedSet();
+            for (int k = 0; k < EDGES_PER_OWNER; k++) {
+                long id = Datasets.neighbour(owner + 1, k, edgeCount);
+                if (set instanceof LongSortedSet) {
+                    ((LongSortedSet) set).add(id);
+                } else {
+                    set.add(id);
+                }
+            }
+            owners[owner] = set;
+        }
+        return owners;
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        long retained = usedHeap() - heapBefore;
+        System.out.printf("%n%s: %d bytes retained, %.1f bytes per edge%n",
+                implementation, retained, (double) retained / edgeCount);
+        owners = null;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Deterministic test data shared by the benchmarks. Every film gets {@link #LIKES_PER_FILM}
+ * likes and every user {@link #FRIENDS_PER_USER} friends, see {@link #neighbour}.
+ */
+final class Datasets {
+
+    static final int LIKES_PER_FILM = 5;
+    static final int FRIENDS_PER_USER = 10;
+    static final int GENRE_COUNT = 6;
+    static final int MPA_COUNT = 5;
+
+    private Datasets() {
+    }
+
+    static Film film(int i) {
+        return Film.builder()
+                .name("Film " + i)
+                .description("Description of film " + i)
+                .releaseDate(LocalDate.of(1950 + i % 70, 1 + i % 12, 1 + i % 28))
+                .duration(60L + i % 120)
+                .rate(i % 10)
+                .mpa(Mpa.builder().id(1 + i % MPA_COUNT).build())
+                .genres(new LinkedHashSet<>(List.of(
+                        Genre.builder().id(1 + i % GENRE_COUNT).build(),
+                        Genre.builder().id(1 + (i + 2) % GENRE_COUNT).build())))
+                .likes(new HashSet<>())
+                .build();
+    }
+
+    static User user(int i) {
+        return User.builder()
+                .name("User " + i)
+                .login("user" + i)
+                .email("user" + i + "@example.com")
+                .birthday(LocalDate.of(1960 + i % 40, 1 + i % 12, 1 + i % 28))
+                .friends(new HashSet<>())
+                .build();
+    }
+
+    /**
+     * Id of the k-th neighbour of id among ids 1..size. Offsets are fixed per k, so for
+     * k < {@link #FRIENDS_PER_USER} they are distinct and never point back to id itself.
+     */
+    static long neighbour(long id, int k, int size) {
+        long offset = (k + 1) * 7919L % size;
+        return 1 + (id - 1 + offset) % size;
+    }
+}
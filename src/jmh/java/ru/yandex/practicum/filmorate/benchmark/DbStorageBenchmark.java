@@ -0,0 +1,150 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmDaoService;
+import ru.yandex.practicum.filmorate.service.UserDaoService;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Storage and service hot paths against an embedded H2 seeded with datasetSize films and users.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DbStorageBenchmark {
+
+    private static final int SEED_CHUNK_SIZE = 10_000;
+
+    @State(Scope.Benchmark)
+    public static class Db {
+
+        @Param({"10000"})
+        int datasetSize;
+
+        ConfigurableApplicationContext context;
+        FilmDbStorage filmStorage;
+        FilmDaoService filmService;
+        UserDaoService userService;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            context = new SpringApplicationBuilder(FilmorateApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .properties("spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                            "logging.level.root=WARN")
+                    .run();
+            filmStorage = context.getBean(FilmDbStorage.class);
+            filmService = context.getBean(FilmDaoService.class);
+            userService = context.getBean(UserDaoService.class);
+            seed(context.getBean(UserDbStorage.class), context.getBean(TransactionTemplate.class));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            context.close();
+        }
+
+        private void seed(UserDbStorage userStorage, TransactionTemplate transactionTemplate) {
+            for (int from = 0; from < datasetSize; from += SEED_CHUNK_SIZE) {
+                int to = Math.min(from + SEED_CHUNK_SIZE, datasetSize);
+                List<User> users = new ArrayList<>();
+                List<Film> films = new ArrayList<>();
+                for (int i = from; i < to; i++) {
+                    users.add(Datasets.user(i));
+                    films.add(Datasets.film(i));
+                }
+                transactionTemplate.executeWithoutResult(status -> {
+                    userStorage.createUsers(users);
+                    filmStorage.createFilms(films);
+                });
+            }
+            for (int from = 1; from <= datasetSize; from += SEED_CHUNK_SIZE) {
+                int to = Math.min(from + SEED_CHUNK_SIZE, datasetSize + 1);
+                List<FilmLike> likes = new ArrayList<>();
+                List<Friendship> friendships = new ArrayList<>();
+                for (long id = from; id < to; id++) {
+                    for (int k = 0; k < Datasets.LIKES_PER_FILM; k++) {
+                        likes.add(FilmLike.builder().filmId(id)
+                                .userId(Datasets.neighbour(id, k, datasetSize)).build());
+                    }
+                    for (int k = 0; k < Datasets.FRIENDS_PER_USER; k++) {
+                        friendships.add(Friendship.builder().userId(id)
+                                .friendId(Datasets.neighbour(id, k, datasetSize)).build());
+                    }
+                }
+                transactionTemplate.executeWithoutResult(status -> {
+                    filmService.addLikes(likes);
+                    userService.addFriends(friendships);
+                });
+            }
+        }
+
+        long randomId() {
+            return ThreadLocalRandom.current().nextLong(1, datasetSize + 1);
+        }
+    }
+
+    @Benchmark
+    public List<Film> getFilms(Db db) {
+        return db.filmStorage.getFilms();
+    }
+
+    @Benchmark
+    public Film findFilmById(Db db) {
+        return db.filmStorage.findFilmById(db.randomId());
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilms(Db db) {
+        return db.filmService.getPopularFilms(10, null, null, null, null);
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilmsByGenreAndYears(Db db) {
+        return db.filmService.getPopularFilms(10, 1 + (int) (db.randomId() % Datasets.GENRE_COUNT), null, 1980, 1999);
+    }
+
+    @Benchmark
+    public void addLike(Db db) {
+        db.filmService.addLike(db.randomId(), db.randomId());
+    }
+
+    @Benchmark
+    public List<User> getFriends(Db db) {
+        return db.userService.getFriends(db.randomId());
+    }
+
+    @Benchmark
+    public List<User> getCommonFriends(Db db) {
+        return db.userService.getCommonFriends(db.randomId(), db.randomId());
+    }
+}
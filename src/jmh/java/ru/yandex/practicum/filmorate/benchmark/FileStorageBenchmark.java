@@ -0,0 +1,127 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.LogStore;
+import ru.yandex.practicum.filmorate.storage.LongSortedSet;
+import ru.yandex.practicum.filmorate.storage.film.FileFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.FileUserStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The same hot paths as {@link InMemoryStorageBenchmark} on FileFilmStorage/FileUserStorage, with
+ * the logs in a temporary directory.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FileStorageBenchmark {
+
+    private static final int SEGMENT_SIZE = 64 << 20;
+
+    @State(Scope.Benchmark)
+    public static class Logs {
+
+        @Param({"10000"})
+        int datasetSize;
+
+        Path directory;
+        List<LogStore> logs;
+        FileFilmStorage filmStorage;
+        FileUserStorage userStorage;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("filmorate-logs");
+            LogStore films = new LogStore(directory, "films", SEGMENT_SIZE, false);
+            LogStore likes = new LogStore(directory, "film-likes", SEGMENT_SIZE, false);
+            LogStore users = new LogStore(directory, "users", SEGMENT_SIZE, false);
+            LogStore friends = new LogStore(directory, "friends", SEGMENT_SIZE, false);
+            logs = List.of(films, likes, users, friends);
+            filmStorage = new FileFilmStorage(films, likes);
+            userStorage = new FileUserStorage(users, friends);
+            for (int i = 0; i < datasetSize; i++) {
+                userStorage.createUser(Datasets.user(i));
+                filmStorage.createFilm(Datasets.film(i));
+            }
+            for (long id = 1; id <= datasetSize; id++) {
+                for (int k = 0; k < Datasets.LIKES_PER_FILM; k++) {
+                    filmStorage.addLike(id, Datasets.neighbour(id, k, datasetSize));
+                }
+                for (int k = 0; k < Datasets.FRIENDS_PER_USER; k++) {
+                    userStorage.addFriend(id, Datasets.neighbour(id, k, datasetSize));
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            logs.forEach(LogStore::close);
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(path);
+                }
+            }
+        }
+
+        long randomId() {
+            return ThreadLocalRandom.current().nextLong(1, datasetSize + 1);
+        }
+    }
+
+    @Benchmark
+    public List<Film> getFilms(Logs state) {
+        return state.filmStorage.getFilms();
+    }
+
+    @Benchmark
+    public Film findFilmById(Logs state) {
+        return state.filmStorage.findFilmById(state.randomId());
+    }
+
+    @Benchmark
+    public Film updateFilm(Logs state) {
+        Film film = Datasets.film((int) state.randomId() - 1);
+        film.setId(state.randomId());
+        return state.filmStorage.updateFilm(film);
+    }
+
+    @Benchmark
+    public boolean addLike(Logs state) {
+        return state.filmStorage.addLike(state.randomId(), state.randomId());
+    }
+
+    @Benchmark
+    public List<User> getFriends(Logs state) {
+        return state.userStorage.findUsersByIds(state.userStorage.getFriendIds(state.randomId()));
+    }
+
+    @Benchmark
+    public List<User> getCommonFriends(Logs state) {
+        return state.userStorage.findUsersByIds(LongSortedSet.intersect(
+                state.userStorage.getFriendIds(state.randomId()), state.userStorage.getFriendIds(state.randomId())));
+    }
+}
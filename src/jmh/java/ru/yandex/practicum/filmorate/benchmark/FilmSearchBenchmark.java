@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.film.PopularFilmsIndex;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FilmSearchIndex queries over datasetSize films with Russian-like names and descriptions drawn
+ * from a vocabulary of {@link #VOCABULARY_SIZE} words. Run with SampleTime to see the p99.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class FilmSearchBenchmark {
+
+    private static final List<String> SYLLABLES = List.of("ка", "ро", "ми", "ле", "то", "на", "зё", "ви", "ду", "ся",
+            "бо", "ре", "лу", "жа", "пе", "ти", "го", "шу", "фа", "мё");
+    private static final int VOCABULARY_SIZE = SYLLABLES.size() * SYLLABLES.size() * SYLLABLES.size();
+    private static final int NAME_WORDS = 2;
+    private static final int DESCRIPTION_WORDS = 8;
+
+    @State(Scope.Benchmark)
+    public static class Index {
+
+        @Param({"1000000"})
+        int datasetSize;
+
+        FilmSearchIndex searchIndex;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            PopularFilmsIndex popularFilmsIndex = new PopularFilmsIndex(null);
+            searchIndex = new FilmSearchIndex(null, popularFilmsIndex);
+            for (long id = 1; id <= datasetSize; id++) {
+                SplittableRandom random = new SplittableRandom(id);
+                popularFilmsIndex.putFilm(id, 1, List.of(), 2000);
+                popularFilmsIndex.changeLikes(id, random.nextInt(100));
+                searchIndex.putFilm(id, words(random, NAME_WORDS), words(random, DESCRIPTION_WORDS));
+            }
+        }
+    }
+
+    @Benchmark
+    public long[] searchWord(Index index) {
+        return index.searchIndex.search(word(ThreadLocalRandom.current().nextInt(VOCABULARY_SIZE)), 20);
+    }
+
+    @Benchmark
+    public long[] searchTwoWords(Index index) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return index.searchIndex.search(word(random.nextInt(VOCABULARY_SIZE)) + " "
+                + word(random.nextInt(VOCABULARY_SIZE)), 20);
+    }
+
+    /**
+     * The last word typed up to its second syllable, as while typing.
+     */
+    @Benchmark
+    public long[] searchPrefix(Index index) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return index.searchIndex.search(word(random.nextInt(VOCABULARY_SIZE)) + " "
+                + word(random.nextInt(VOCABULARY_SIZE)).substring(0, 4), 20);
+    }
+
+    private static String words(SplittableRandom random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(i == 0 ? "" : " ").append(word(random.nextInt(VOCABULARY_SIZE)));
+        }
+        return text.toString();
+    }
+
+    /**
+     * The n-th word of the vocabulary: three syllables, so every word is six letters long.
+     */
+    private static String word(int n) {
+        int size = SYLLABLES.size();
+        return SYLLABLES.get(n % size) + SYLLABLES.get(n / size % size) + SYLLABLES.get(n / size / size);
+    }
+}
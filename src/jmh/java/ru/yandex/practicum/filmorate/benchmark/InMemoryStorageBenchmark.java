@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same hot paths as {@link DbStorageBenchmark} on InMemoryFilmStorage/InMemoryUserStorage.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class InMemoryStorageBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class InMemory {
+
+        @Param({"10000"})
+        int datasetSize;
+
+        FilmService filmService;
+        UserService userService;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+            InMemoryUserStorage userStorage = new InMemoryUserStorage();
+            filmService = new FilmService(filmStorage, userStorage);
+            userService = new UserService(userStorage);
+            for (int i = 0; i < datasetSize; i++) {
+                userStorage.createUser(Datasets.user(i));
+                filmStorage.createFilm(Datasets.film(i));
+            }
+            for (long id = 1; id <= datasetSize; id++) {
+                for (int k = 0; k < Datasets.LIKES_PER_FILM; k++) {
+                    filmService.addLike(id, Datasets.neighbour(id, k, datasetSize));
+                }
+                for (int k = 0; k < Datasets.FRIENDS_PER_USER; k++) {
+                    userService.addFriend(id, Datasets.neighbour(id, k, datasetSize));
+                }
+            }
+        }
+
+        long randomId() {
+            return ThreadLocalRandom.current().nextLong(1, datasetSize + 1);
+        }
+    }
+
+    @Benchmark
+    public List<Film> getFilms(InMemory state) {
+        return state.filmService.getFilms();
+    }
+
+    @Benchmark
+    public Film findFilmById(InMemory state) {
+        return state.filmService.findFilmById(state.randomId());
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilms(InMemory state) {
+        return state.filmService.getPopularFilms(10);
+    }
+
+    @Benchmark
+    public void addLike(InMemory state) {
+        state.filmService.addLike(state.randomId(), state.randomId());
+    }
+
+    @Benchmark
+    public List<User> getFriends(InMemory state) {
+        return state.userService.getFriends(state.randomId());
+    }
+
+    @Benchmark
+    public List<User> getCommonFriends(InMemory state) {
+        return state.userService.getCommonFriends(state.randomId(), state.randomId());
+    }
+}
@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandlerComposite;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Writes the value of a CompletableFuture that has already completed when the controller returns
+ * it, the way the value itself would be written, instead of starting an async dispatch. In the
+ * {@code platform} and {@code virtual} modes {@link ReadExecutor} only returns completed futures,
+ * so reads take the same synchronous path through the DispatcherServlet and the filters as any
+ * other endpoint. Futures still running, failed ones and null are left to Spring MVC.
+ */
+public class CompletedFutureReturnValueHandler implements HandlerMethodReturnValueHandler {
+
+    private final HandlerMethodReturnValueHandlerComposite handlers = new HandlerMethodReturnValueHandlerComposite();
+
+    public CompletedFutureReturnValueHandler(List<HandlerMethodReturnValueHandler> handlers) {
+        this.handlers.addHandlers(handlers);
+    }
+
+    @Override
+    public boolean supportsReturnType(MethodParameter returnType) {
+        return CompletableFuture.class.isAssignableFrom(returnType.getParameterType());
+    }
+
+    @Override
+    public void handleReturnValue(Object returnValue, MethodParameter returnType, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest) throws Exception {
+        CompletableFuture<?> future = (CompletableFuture<?>) returnValue;
+        if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+            handlers.handleReturnValue(returnValue, returnType, mavContainer, webRequest);
+            return;
+        }
+        handlers.handleReturnValue(future.getNow(null), new CompletedValueParameter(returnType), mavContainer, webRequest);
+    }
+
+    /**
+     * The controller's return type with the future unwrapped, e.g. {@code List<Film>} for
+     * {@code CompletableFuture<List<Film>>}.
+     */
+    private static final class CompletedValueParameter extends MethodParameter {
+        private final ResolvableType valueType;
+
+        private CompletedValueParameter(MethodParameter returnType) {
+            this(returnType, ResolvableType.forMethodParameter(returnType).getGeneric());
+        }
+
+        private CompletedValueParameter(MethodParameter original, ResolvableType valueType) {
+            super(original);
+            this.valueType = valueType;
+        }
+
+        @Override
+        public Class<?> getParameterType() {
+            return valueType.toClass();
+        }
+
+        @Override
+        public Type getGenericParameterType() {
+            return valueType.getType();
+        }
+
+        @Override
+        public CompletedValueParameter clone() {
+            return new CompletedValueParameter(this, valueType);
+        }
+    }
+}
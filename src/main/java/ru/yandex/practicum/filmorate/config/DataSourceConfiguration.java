@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Datasource instrumentation. The pool itself (size, timeouts, fetch size, query timeout) is
+ * configured with the spring.datasource.hikari.* and spring.jdbc.template.* properties; Hikari
+ * pool metrics are published by Spring Boot under hikaricp.connections.*.
+ */
+@Configuration
+public class DataSourceConfiguration {
+
+    @Bean
+    public static QueryTimingPostProcessor queryTimingPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new QueryTimingPostProcessor(meterRegistry);
+    }
+}
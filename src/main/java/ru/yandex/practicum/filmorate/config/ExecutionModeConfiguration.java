@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Request execution mode, selected with {@code filmorate.execution.mode}:
+ * <ul>
+ *     <li>{@code platform} (default) - requests run on Tomcat's platform thread pool;</li>
+ *     <li>{@code virtual} - Tomcat runs every request on its own virtual thread, so blocking JDBC
+ *     calls don't hold a platform thread. Needs a Java 21 runtime;</li>
+ *     <li>{@code offload} - read endpoints run their JDBC work on the bounded {@link ReadExecutor}
+ *     and return a CompletableFuture, freeing the Tomcat thread; reads over the queue capacity get 503.</li>
+ * </ul>
+ * Read endpoints return a CompletableFuture in every mode; a future that is already complete is
+ * written synchronously by {@link CompletedFutureReturnValueHandler}, so only {@code offload} pays
+ * for Spring MVC's async dispatch.
+ */
+@Slf4j
+@Configuration
+public class ExecutionModeConfiguration {
+
+    static final String MODE_PROPERTY = "filmorate.execution.mode";
+
+    @Bean
+    @ConditionalOnProperty(name = MODE_PROPERTY, havingValue = "virtual")
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        log.info("Requests run on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    /**
+     * Puts {@link CompletedFutureReturnValueHandler} in front of Spring MVC's own handler for
+     * CompletableFuture, which would start an async dispatch even for completed futures.
+     */
+    @Bean
+    public SmartInitializingSingleton completedFutureReturnValueHandlerRegistrar(
+            ObjectProvider<RequestMappingHandlerAdapter> handlerAdapter) {
+        return () -> handlerAdapter.ifAvailable(adapter -> {
+            List<HandlerMethodReturnValueHandler> handlers = new ArrayList<>(adapter.getReturnValueHandlers());
+            handlers.add(0, new CompletedFutureReturnValueHandler(adapter.getReturnValueHandlers()));
+            adapter.setReturnValueHandlers(handlers);
+        });
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() is looked up at runtime so the project still builds
+     * on Java 17, where virtual threads don't exist.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(String.format("%s=virtual needs Java 21 or later, running on %s",
+                    MODE_PROPERTY, Runtime.version()), e);
+        }
+    }
+}
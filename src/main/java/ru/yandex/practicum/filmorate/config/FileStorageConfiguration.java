@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import ru.yandex.practicum.filmorate.storage.LogStore;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs of the file-backed storages, enabled with {@code filmorate.storage.file.enabled=true}:
+ * films, film likes, users and friendships, each a {@link LogStore} under
+ * {@code filmorate.storage.file.directory}. The logs are compacted every
+ * {@code filmorate.storage.file.compaction-interval-ms} once
+ * {@code filmorate.storage.file.compaction-min-garbage} of their sealed segments is garbage.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "filmorate.storage.file.enabled", havingValue = "true")
+public class FileStorageConfiguration {
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean forceWrites;
+
+    public FileStorageConfiguration(@Value("${filmorate.storage.file.directory:./data}") String directory,
+                                    @Value("${filmorate.storage.file.segment-size:64MB}") DataSize segmentSize,
+                                    @Value("${filmorate.storage.file.force-writes:false}") boolean forceWrites) {
+        this.directory = Path.of(directory);
+        this.segmentSize = Math.toIntExact(segmentSize.toBytes());
+        this.forceWrites = forceWrites;
+    }
+
+    @Bean(destroyMethod = "close")
+    public LogStore filmLog() {
+        return new LogStore(directory, "films", segmentSize, forceWrites);
+    }
+
+    @Bean(destroyMethod = "close")
+    public LogStore filmLikeLog() {
+        return new LogStore(directory, "film-likes", segmentSize, forceWrites);
+    }
+
+    @Bean(destroyMethod = "close")
+    public LogStore userLog() {
+        return new LogStore(directory, "users", segmentSize, forceWrites);
+    }
+
+    @Bean(destroyMethod = "close")
+    public LogStore friendLog() {
+        return new LogStore(directory, "friends", segmentSize, forceWrites);
+    }
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService logCompactor(
+            List<LogStore> logs,
+            @Value("${filmorate.storage.file.compaction-interval-ms:60000}") long intervalMs,
+            @Value("${filmorate.storage.file.compaction-min-garbage:0.5}") double minGarbageRatio) {
+        ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor(
+                runnable -> new Thread(runnable, "log-compaction"));
+        compactor.scheduleWithFixedDelay(() -> {
+            for (LogStore logStore : logs) {
+                try {
+                    logStore.compact(minGarbageRatio);
+                } catch (RuntimeException e) {
+                    log.error("Log compaction failed", e);
+                }
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        return compactor;
+    }
+}
@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.WebContentInterceptor;
+
+import java.time.Duration;
+
+/**
+ * Cache-Control for the endpoints that answer conditional GETs. Genres and MPA ratings change
+ * rarely and may be cached for {@code filmorate.http.reference-max-age};
+ * films may be stored but have to be revalidated with their ETag on every use.
+ */
+@Configuration
+public class HttpCachingConfiguration implements WebMvcConfigurer {
+
+    private final Duration referenceMaxAge;
+
+    public HttpCachingConfiguration(@Value("${filmorate.http.reference-max-age:1h}") Duration referenceMaxAge) {
+        this.referenceMaxAge = referenceMaxAge;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        WebContentInterceptor interceptor = new WebContentInterceptor();
+        interceptor.addCacheMapping(CacheControl.maxAge(referenceMaxAge).cachePublic(),
+                "/genres", "/genres/*", "/mpa", "/mpa/*");
+        interceptor.addCacheMapping(CacheControl.noCache(), "/films/*");
+        registry.addInterceptor(interceptor).addPathPatterns("/genres/**", "/mpa/**", "/films/*");
+    }
+}
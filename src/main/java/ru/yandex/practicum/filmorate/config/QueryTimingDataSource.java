@@ -0,0 +1,115 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Data source that times every statement execution in the {@value #METRIC_NAME}
+ * timer. The timer is tagged with the name of the SQL constant the statement was prepared from,
+ * e.g. {@code FilmDbStorage.QUERY_GET_FILM_BY_ID}, or {@code other} for SQL that isn't a known constant.
+ */
+public class QueryTimingDataSource extends DelegatingDataSource {
+
+    static final String METRIC_NAME = "filmorate.jdbc.query";
+    private static final String UNKNOWN_QUERY = "other";
+    private static final Set<String> EXECUTE_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final Map<String, String> queryNames;
+    private final Map<String, Timer> successTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> errorTimers = new ConcurrentHashMap<>();
+
+    QueryTimingDataSource(DataSource dataSource, ObjectProvider<MeterRegistry> meterRegistry,
+                          Map<String, String> queryNames) {
+        super(dataSource);
+        this.meterRegistry = meterRegistry;
+        this.queryNames = queryNames;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return timed(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return timed(super.getConnection(username, password));
+    }
+
+    private Connection timed(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof PreparedStatement && args != null && args[0] instanceof String) {
+                        return timed((Statement) result, method.getReturnType(), (String) args[0]);
+                    } else if (result instanceof Statement) {
+                        return timed((Statement) result, method.getReturnType(), null);
+                    }
+                    return result;
+                });
+    }
+
+    /**
+     * Times a statement. A prepared statement carries its SQL from prepareStatement, a plain
+     * statement passes it to execute.
+     */
+    private Object timed(Statement statement, Class<?> type, String preparedSql) {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (!EXECUTE_METHODS.contains(method.getName())) {
+                return invoke(statement, method, args);
+            }
+            String sql = preparedSql == null && args != null && args[0] instanceof String ? (String) args[0] : preparedSql;
+            long start = System.nanoTime();
+            try {
+                Object result = invoke(statement, method, args);
+                record(successTimers, sql, "success", start);
+                return result;
+            } catch (SQLException e) {
+                record(errorTimers, sql, "error", start);
+                throw e;
+            }
+        });
+    }
+
+    private void record(Map<String, Timer> timers, String sql, String outcome, long start) {
+        long elapsed = System.nanoTime() - start;
+        String name = sql == null ? UNKNOWN_QUERY : queryNames.getOrDefault(sql, UNKNOWN_QUERY);
+        Timer timer = timers.get(name);
+        if (timer == null) {
+            MeterRegistry registry = meterRegistry.getIfAvailable();
+            if (registry == null) {
+                return;
+            }
+            timer = timers.computeIfAbsent(name, key -> Timer.builder(METRIC_NAME)
+                    .description("Execution time of SQL statements")
+                    .tag("query", key)
+                    .tag("outcome", outcome)
+                    .register(registry));
+        }
+        timer.record(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
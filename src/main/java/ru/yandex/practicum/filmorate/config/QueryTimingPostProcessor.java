@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wraps the data source in a {@link QueryTimingDataSource} and collects the names of the
+ * {@code QUERY_*} SQL constants of the application's beans for its timer tags. Runs before
+ * {@code @PostConstruct} methods, so queries issued while beans initialise are named too.
+ */
+@Slf4j
+public class QueryTimingPostProcessor implements BeanPostProcessor, PriorityOrdered {
+
+    private static final String QUERY_PREFIX = "QUERY_";
+    private static final String APPLICATION_PACKAGE = FilmorateApplication.class.getPackageName();
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final Map<String, String> queryNames = new ConcurrentHashMap<>();
+
+    public QueryTimingPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        Class<?> beanClass = ClassUtils.getUserClass(bean);
+        if (beanClass.getPackageName().startsWith(APPLICATION_PACKAGE)) {
+            ReflectionUtils.doWithLocalFields(beanClass, field -> collectQueryName(beanClass, field));
+        }
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource && !(bean instanceof QueryTimingDataSource)) {
+            log.info("Timing SQL statements of data source {}", beanName);
+            return new QueryTimingDataSource((DataSource) bean, meterRegistry, queryNames);
+        }
+        return bean;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    private void collectQueryName(Class<?> beanClass, Field field) throws IllegalAccessException {
+        int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers) && field.getType() == String.class
+                && field.getName().startsWith(QUERY_PREFIX)) {
+            ReflectionUtils.makeAccessible(field);
+            queryNames.put((String) field.get(null), beanClass.getSimpleName() + "." + field.getName());
+        }
+    }
+}
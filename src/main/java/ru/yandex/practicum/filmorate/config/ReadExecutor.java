@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the blocking part of read endpoints. In {@code offload} mode the read goes to a bounded
+ * pool and the request thread is released until the future completes; a full queue rejects the
+ * read with {@link java.util.concurrent.RejectedExecutionException}. In the other modes the read
+ * runs on the request thread and an already completed future is returned, which
+ * {@link CompletedFutureReturnValueHandler} writes without an async dispatch.
+ */
+@Slf4j
+@Component
+public class ReadExecutor {
+
+    private static final String OFFLOAD_MODE = "offload";
+
+    private final ThreadPoolExecutor executor;
+
+    @Autowired
+    public ReadExecutor(@Value("${" + ExecutionModeConfiguration.MODE_PROPERTY + ":platform}") String mode,
+                        @Value("${filmorate.execution.offload.pool-size:32}") int poolSize,
+                        @Value("${filmorate.execution.offload.queue-capacity:2000}") int queueCapacity) {
+        if (OFFLOAD_MODE.equals(mode)) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> new Thread(runnable, "read-" + threadNumber.incrementAndGet()));
+            log.info("Reads are offloaded to {} threads, queue capacity {}", poolSize, queueCapacity);
+        } else {
+            executor = null;
+        }
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> read) {
+        if (executor == null) {
+            return CompletableFuture.completedFuture(read.get());
+        }
+        return CompletableFuture.supplyAsync(read, executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
@@ -7,26 +10,63 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 import ru.yandex.practicum.filmorate.exception.*;
 import ru.yandex.practicum.filmorate.model.ErrorResponse;
 
+import java.util.concurrent.RejectedExecutionException;
+
 
 @RestControllerAdvice
 public class ErrorHandler {
 
+    private static final String ERRORS_METRIC_NAME = "filmorate.errors";
+
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public ErrorHandler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     @ExceptionHandler({UserNotFoundException.class, FilmNotFoundException.class,
             GenreNotFoundException.class, MpaNotFoundException.class})
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public ErrorResponse handleUserNotFoundException(final RuntimeException e) {
+        count(e, HttpStatus.NOT_FOUND);
         return new ErrorResponse(e.getMessage());
     }
 
     @ExceptionHandler({IncorrectParameterException.class, ValidationException.class})
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ErrorResponse handleValidationException(final RuntimeException e) {
+        count(e, HttpStatus.BAD_REQUEST);
+        return new ErrorResponse(e.getMessage());
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ErrorResponse handleConflictException(final ConflictException e) {
+        count(e, HttpStatus.CONFLICT);
         return new ErrorResponse(e.getMessage());
     }
 
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorResponse handleRejectedExecutionException(final RejectedExecutionException e) {
+        count(e, HttpStatus.SERVICE_UNAVAILABLE);
+        return new ErrorResponse("Сервер перегружен, повторите запрос позже.");
+    }
+
     @ExceptionHandler
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public ErrorResponse handleThrowable(final Throwable e) {
+        count(e, HttpStatus.INTERNAL_SERVER_ERROR);
         return new ErrorResponse("Произошла непредвиденная ошибка.");
     }
+
+    private void count(Throwable e, HttpStatus status) {
+        Counter.builder(ERRORS_METRIC_NAME)
+                .description("Errors returned by the API")
+                .tag("exception", e.getClass().getSimpleName())
+                .tag("status", String.valueOf(status.value()))
+                .register(meterRegistry)
+                .increment();
+    }
 }
\ No newline at end of file
@@ -1,23 +1,41 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.config.ReadExecutor;
 import ru.yandex.practicum.filmorate.exception.IncorrectParameterException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BulkFetchResult;
 import ru.yandex.practicum.filmorate.model.Film;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.service.FilmDaoService;
+import ru.yandex.practicum.filmorate.storage.ResourceVersions;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 
 
 @RestController
 public class FilmController {
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_SEARCH_RESULTS = 100;
     private final FilmDaoService filmService;
+    private final ObjectMapper objectMapper;
+    private final ReadExecutor readExecutor;
+    private final ResourceVersions resourceVersions;
 
     @Autowired
-    public FilmController(FilmDaoService filmService) {
+    public FilmController(FilmDaoService filmService, ObjectMapper objectMapper, ReadExecutor readExecutor,
+                          ResourceVersions resourceVersions) {
         this.filmService = filmService;
+        this.objectMapper = objectMapper;
+        this.readExecutor = readExecutor;
+        this.resourceVersions = resourceVersions;
     }
 
 
@@ -32,13 +50,43 @@ public class FilmController {
     }
 
     @GetMapping("/films")
-    public List<Film> getFilms() {
-        return filmService.getFilms();
+    public CompletableFuture<List<Film>> getFilms(@RequestParam(required = false) Long after,
+                                                  @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return readExecutor.submit(filmService::getFilms);
+        }
+        if (after != null && after < 0) {
+            throw new IncorrectParameterException(String.format("after %d", after));
+        }
+        if (limit != null && (limit <= 0 || limit > MAX_PAGE_SIZE)) {
+            throw new IncorrectParameterException(String.format("limit %d", limit));
+        }
+        long pageAfter = after == null ? 0 : after;
+        int pageLimit = limit == null ? MAX_PAGE_SIZE : limit;
+        return readExecutor.submit(() -> filmService.getFilms(pageAfter, pageLimit));
+    }
+
+    @GetMapping(value = "/films", params = "ids")
+    public CompletableFuture<BulkFetchResult<Film>> getFilmsByIds(@RequestParam List<Long> ids) {
+        if (ids.isEmpty() || ids.size() > MAX_PAGE_SIZE || ids.contains(null)) {
+            throw new IncorrectParameterException("ids");
+        }
+        return readExecutor.submit(() -> filmService.getFilmsByIds(ids));
+    }
+
+    @GetMapping(value = "/films", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamFilms() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(KeysetJsonStream.of(objectMapper, filmService::getFilms, Film::getId));
     }
 
     @GetMapping("/films/{id}")
-    public Film findFilmById(@PathVariable long id) {
-        return filmService.findFilmById(id);
+    public CompletableFuture<Film> findFilmById(@PathVariable long id, WebRequest webRequest) {
+        if (webRequest.checkNotModified(resourceVersions.filmTag(id))) {
+            return null;
+        }
+        return readExecutor.submit(() -> filmService.findFilmById(id));
     }
 
     @DeleteMapping("/films/{id}")
@@ -56,11 +104,38 @@ public class FilmController {
         filmService.deleteLike(id, userId);
     }
 
+    @GetMapping("/films/search")
+    public CompletableFuture<List<Film>> searchFilms(@RequestParam(required = false) String q,
+                                                     @RequestParam(defaultValue = "20", required = false) Integer limit,
+                                                     WebRequest webRequest) {
+        if (q == null || q.isBlank()) {
+            throw new IncorrectParameterException("q");
+        }
+        if (limit <= 0 || limit > MAX_SEARCH_RESULTS) {
+            throw new IncorrectParameterException(String.format("limit %d", limit));
+        }
+        if (webRequest.checkNotModified(resourceVersions.filmsTag())) {
+            return null;
+        }
+        return readExecutor.submit(() -> filmService.searchFilms(q, limit));
+    }
+
     @GetMapping("/films/popular")
-    public List<Film> getPopularFilms(@RequestParam(defaultValue = "10", required = false) Integer count) {
-        if (count <= 0) {
+    public CompletableFuture<List<Film>> getPopularFilms(@RequestParam(defaultValue = "10", required = false) Integer count,
+                                                         @RequestParam(required = false) Integer genreId,
+                                                         @RequestParam(required = false) Integer mpaId,
+                                                         @RequestParam(required = false) Integer fromYear,
+                                                         @RequestParam(required = false) Integer toYear,
+                                                         WebRequest webRequest) {
+        if (count <= 0 || count > MAX_PAGE_SIZE) {
             throw new IncorrectParameterException(String.format("count %d", count));
         }
-        return filmService.getPopularFilms(count);
+        if (fromYear != null && toYear != null && fromYear > toYear) {
+            throw new IncorrectParameterException(String.format("fromYear %d is after toYear %d", fromYear, toYear));
+        }
+        if (webRequest.checkNotModified(resourceVersions.filmsTag())) {
+            return null;
+        }
+        return readExecutor.submit(() -> filmService.getPopularFilms(count, genreId, mpaId, fromYear, toYear));
     }
 }
\ No newline at end of file
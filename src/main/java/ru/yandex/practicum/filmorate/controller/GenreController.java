@@ -4,27 +4,37 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.service.GenreDaoService;
+import ru.yandex.practicum.filmorate.storage.ResourceVersions;
 
 import java.util.List;
 
 @RestController
 public class GenreController {
     private final GenreDaoService genreService;
+    private final ResourceVersions resourceVersions;
 
     @Autowired
-    public GenreController(GenreDaoService genreService) {
+    public GenreController(GenreDaoService genreService, ResourceVersions resourceVersions) {
         this.genreService = genreService;
+        this.resourceVersions = resourceVersions;
     }
 
     @GetMapping("/genres")
-    public List<Genre> getGenres() {
+    public List<Genre> getGenres(WebRequest webRequest) {
+        if (webRequest.checkNotModified(resourceVersions.referenceDataTag())) {
+            return null;
+        }
         return genreService.getGenres();
     }
 
     @GetMapping("/genres/{id}")
-    public Genre findGenreById(@PathVariable long id) {
+    public Genre findGenreById(@PathVariable long id, WebRequest webRequest) {
+        if (webRequest.checkNotModified(resourceVersions.referenceDataTag())) {
+            return null;
+        }
         return genreService.findGenreById(id);
     }
 }
@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+import ru.yandex.practicum.filmorate.service.ImportService;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+public class ImportController {
+    private final ImportService importService;
+
+    @Autowired
+    public ImportController(ImportService importService) {
+        this.importService = importService;
+    }
+
+    @PostMapping("/import/films")
+    public ImportReport importFilms(InputStream body) throws IOException {
+        return importService.importFilms(body);
+    }
+
+    @PostMapping("/import/users")
+    public ImportReport importUsers(InputStream body) throws IOException {
+        return importService.importUsers(body);
+    }
+
+    @PostMapping("/import/likes")
+    public ImportReport importLikes(InputStream body) throws IOException {
+        return importService.importLikes(body);
+    }
+
+    @PostMapping("/import/friends")
+    public ImportReport importFriends(InputStream body) throws IOException {
+        return importService.importFriends(body);
+    }
+}
@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Writes a whole table as a JSON array by walking it in keyset pages, so only one page
+ * is held in memory at a time whatever the table size.
+ */
+class KeysetJsonStream {
+
+    static final int PAGE_SIZE = 500;
+
+    interface PageLoader<T> {
+        List<T> load(long after, int limit);
+    }
+
+    static <T> StreamingResponseBody of(ObjectMapper objectMapper, PageLoader<T> loader, ToLongFunction<T> idGetter) {
+        return outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                long after = 0;
+                List<T> page;
+                do {
+                    page = loader.load(after, PAGE_SIZE);
+                    for (T item : page) {
+                        generator.writeObject(item);
+                    }
+                    generator.flush();
+                    if (!page.isEmpty()) {
+                        after = idGetter.applyAsLong(page.get(page.size() - 1));
+                    }
+                } while (page.size() == PAGE_SIZE);
+                generator.writeEndArray();
+            }
+        };
+    }
+}
@@ -4,27 +4,37 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.service.MpaDaoService;
+import ru.yandex.practicum.filmorate.storage.ResourceVersions;
 
 import java.util.List;
 
 @RestController
 public class MpaController {
     private final MpaDaoService mpaService;
+    private final ResourceVersions resourceVersions;
 
     @Autowired
-    public MpaController(MpaDaoService mpaService) {
+    public MpaController(MpaDaoService mpaService, ResourceVersions resourceVersions) {
         this.mpaService = mpaService;
+        this.resourceVersions = resourceVersions;
     }
 
     @GetMapping("/mpa")
-    public List<Mpa> getMpa() {
+    public List<Mpa> getMpa(WebRequest webRequest) {
+        if (webRequest.checkNotModified(resourceVersions.referenceDataTag())) {
+            return null;
+        }
         return mpaService.getMpa();
     }
 
     @GetMapping("/mpa/{id}")
-    public Mpa findMpaById(@PathVariable long id) {
+    public Mpa findMpaById(@PathVariable long id, WebRequest webRequest) {
+        if (webRequest.checkNotModified(resourceVersions.referenceDataTag())) {
+            return null;
+        }
         return mpaService.findMpaById(id);
     }
 }
@@ -1,21 +1,41 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.config.ReadExecutor;
+import ru.yandex.practicum.filmorate.exception.IncorrectParameterException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BulkFetchResult;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
 import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.service.FilmDaoService;
 import ru.yandex.practicum.filmorate.service.UserDaoService;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 
 @RestController
 public class UserController {
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_RECOMMENDATIONS = 100;
+    private static final int MAX_FRIEND_SUGGESTIONS = 100;
     private final UserDaoService userService;
+    private final FilmDaoService filmService;
+    private final ObjectMapper objectMapper;
+    private final ReadExecutor readExecutor;
 
     @Autowired
-    public UserController(UserDaoService userService) {
+    public UserController(UserDaoService userService, FilmDaoService filmService, ObjectMapper objectMapper,
+                          ReadExecutor readExecutor) {
         this.userService = userService;
+        this.filmService = filmService;
+        this.objectMapper = objectMapper;
+        this.readExecutor = readExecutor;
     }
 
     @PostMapping("/users")
@@ -29,13 +49,40 @@ public class UserController {
     }
 
     @GetMapping("/users")
-    public List<User> getUsers() {
-        return userService.getUsers();
+    public CompletableFuture<List<User>> getUsers(@RequestParam(required = false) Long after,
+                                                  @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return readExecutor.submit(userService::getUsers);
+        }
+        if (after != null && after < 0) {
+            throw new IncorrectParameterException(String.format("after %d", after));
+        }
+        if (limit != null && (limit <= 0 || limit > MAX_PAGE_SIZE)) {
+            throw new IncorrectParameterException(String.format("limit %d", limit));
+        }
+        long pageAfter = after == null ? 0 : after;
+        int pageLimit = limit == null ? MAX_PAGE_SIZE : limit;
+        return readExecutor.submit(() -> userService.getUsers(pageAfter, pageLimit));
+    }
+
+    @GetMapping(value = "/users", params = "ids")
+    public CompletableFuture<BulkFetchResult<User>> getUsersByIds(@RequestParam List<Long> ids) {
+        if (ids.isEmpty() || ids.size() > MAX_PAGE_SIZE || ids.contains(null)) {
+            throw new IncorrectParameterException("ids");
+        }
+        return readExecutor.submit(() -> userService.getUsersByIds(ids));
+    }
+
+    @GetMapping(value = "/users", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamUsers() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(KeysetJsonStream.of(objectMapper, userService::getUsers, User::getId));
     }
 
     @GetMapping("/users/{id}")
-    public User findUserById(@PathVariable long id) {
-        return userService.findUserById(id);
+    public CompletableFuture<User> findUserById(@PathVariable long id) {
+        return readExecutor.submit(() -> userService.findUserById(id));
     }
 
     @DeleteMapping("/users/{id}")
@@ -54,13 +101,31 @@ public class UserController {
     }
 
     @GetMapping("/users/{id}/friends")
-    public List<User> getFriends(@PathVariable long id) {
-        return userService.getFriends(id);
+    public CompletableFuture<List<User>> getFriends(@PathVariable long id) {
+        return readExecutor.submit(() -> userService.getFriends(id));
     }
 
     @GetMapping("/users/{id}/friends/common/{otherId}")
-    public List<User> getCommonFriends(@PathVariable long id, @PathVariable long otherId) {
-        return userService.getCommonFriends(id, otherId);
+    public CompletableFuture<List<User>> getCommonFriends(@PathVariable long id, @PathVariable long otherId) {
+        return readExecutor.submit(() -> userService.getCommonFriends(id, otherId));
+    }
+
+    @GetMapping("/users/{id}/friends/suggestions")
+    public CompletableFuture<List<User>> getFriendSuggestions(@PathVariable long id,
+                                                              @RequestParam(defaultValue = "10", required = false) Integer limit) {
+        if (limit <= 0 || limit > MAX_FRIEND_SUGGESTIONS) {
+            throw new IncorrectParameterException(String.format("limit %d", limit));
+        }
+        return readExecutor.submit(() -> userService.getFriendSuggestions(id, limit));
+    }
+
+    @GetMapping("/users/{id}/recommendations")
+    public CompletableFuture<List<Film>> getRecommendations(@PathVariable long id,
+                                                            @RequestParam(defaultValue = "10", required = false) Integer limit) {
+        if (limit <= 0 || limit > MAX_RECOMMENDATIONS) {
+            throw new IncorrectParameterException(String.format("limit %d", limit));
+        }
+        return readExecutor.submit(() -> filmService.getRecommendations(id, limit));
     }
 
 }
@@ -0,0 +1,8 @@
+package ru.yandex.practicum.filmorate.exception;
+
+public class ConflictException extends RuntimeException {
+
+    public ConflictException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.mapRow;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataCache;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fills MPA ratings and genres for a page of films mapped by {@link RowTo#mapRowToFilm}.
+ * MPA and genre names come from {@link ReferenceDataCache}, genre links are read with
+ * one bulk query keyed by film_id instead of a sub-query per row. The ids are passed as a
+ * single array joined through UNNEST: H2 evaluates a long IN (?, ?, ...) list much slower.
+ */
+@Component
+public class FilmAssembler {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final String QUERY_GET_GENRE_IDS_BY_FILM_IDS = "SELECT fg.film_id, fg.genre_id " +
+            "FROM UNNEST(CAST(? AS BIGINT ARRAY)) AS ids(film_id) " +
+            "JOIN film_genres AS fg ON fg.film_id = ids.film_id " +
+            "ORDER BY fg.film_id, fg.genre_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReferenceDataCache referenceDataCache;
+
+    @Autowired
+    public FilmAssembler(JdbcTemplate jdbcTemplate, ReferenceDataCache referenceDataCache) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.referenceDataCache = referenceDataCache;
+    }
+
+    public Film assemble(Film film) {
+        assemble(List.of(film));
+        return film;
+    }
+
+    public List<Film> assemble(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        fillMpa(films);
+        fillGenres(films);
+        return films;
+    }
+
+    private void fillMpa(List<Film> films) {
+        for (Film film : films) {
+            if (film.getMpa() != null) {
+                film.setMpa(referenceDataCache.findMpaById(film.getMpa().getId()));
+            }
+        }
+    }
+
+    private void fillGenres(List<Film> films) {
+        Map<Long, Film> filmsById = new HashMap<>();
+        for (Film film : films) {
+            film.setGenres(new LinkedHashSet<>());
+            filmsById.put(film.getId(), film);
+        }
+        Long[] ids = filmsById.keySet().toArray(new Long[0]);
+        for (int from = 0; from < ids.length; from += BATCH_SIZE) {
+            Long[] batch = Arrays.copyOfRange(ids, from, Math.min(from + BATCH_SIZE, ids.length));
+            jdbcTemplate.query(QUERY_GET_GENRE_IDS_BY_FILM_IDS,
+                    resultSet -> {
+                        Film film = filmsById.get(resultSet.getLong("film_id"));
+                        film.getGenres().add(referenceDataCache.findGenreById(resultSet.getInt("genre_id")));
+                    }, (Object) batch);
+        }
+    }
+}
@@ -1,8 +1,5 @@
 package ru.yandex.practicum.filmorate.mapRow;
 
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
@@ -12,32 +9,25 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.LinkedHashSet;
 
-@Component
 public class RowTo {
 
-    private static JdbcTemplate jdbcTemplate;
-    private static final String QUERY_GET_MPA_BY_ID = "SELECT * FROM mpa_ratings WHERE mpa_rating_id = ?";
-    private static final String QUERY_GET_GENRE_BY_FILM_ID = "SELECT * FROM genres JOIN film_genres " +
-            "AS fg ON genres.genre_id = fg.genre_id  " +
-            "WHERE fg.film_id = ?";
-
-    @Autowired
-    public RowTo(JdbcTemplate jdbcTemplate) {
-        RowTo.jdbcTemplate = jdbcTemplate;
-    }
-
+    /**
+     * Maps the base film columns only. MPA carries just its id and genres are left empty,
+     * both are filled for the whole page by {@link FilmAssembler}.
+     */
     public static Film mapRowToFilm(ResultSet resultSet, int rowNum) throws SQLException {
+        int mpaId = resultSet.getInt("mpa_rating_id");
+        Mpa mpa = resultSet.wasNull() ? null : Mpa.builder().id(mpaId).build();
         return Film.builder()
                 .id(resultSet.getLong("film_id"))
+                .version(resultSet.getLong("version"))
                 .name(resultSet.getString("film_name"))
                 .description(resultSet.getString("description"))
                 .rate(resultSet.getInt("rate"))
                 .releaseDate(resultSet.getDate("release_date").toLocalDate())
                 .duration(resultSet.getLong("duration"))
-                .mpa(jdbcTemplate.queryForObject(QUERY_GET_MPA_BY_ID, RowTo::mapRowToMpa,
-                        resultSet.getInt("mpa_rating_id")))
-                .genres(new LinkedHashSet<>(jdbcTemplate.query(QUERY_GET_GENRE_BY_FILM_ID, RowTo::mapRowToGenre,
-                        resultSet.getLong("film_id"))))
+                .mpa(mpa)
+                .genres(new LinkedHashSet<>())
                 .build();
     }
 
@@ -51,6 +41,7 @@ public class RowTo {
     public static User mapRowToUser(ResultSet resultSet, int rowNum) throws SQLException {
         return User.builder()
                 .id(resultSet.getInt("user_id"))
+                .version(resultSet.getLong("version"))
                 .name(resultSet.getString("user_name"))
                 .login(resultSet.getString("login"))
                 .email(resultSet.getString("email"))
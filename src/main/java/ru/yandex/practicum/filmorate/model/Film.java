@@ -15,6 +15,11 @@ import java.util.TreeSet;
 @Builder
 public class Film {
     private long id;
+    /**
+     * Incremented on every update. A PUT carrying the version updates the film only if it is still
+     * at that version, a PUT without it always does.
+     */
+    private Long version;
     private int rate;
     private Mpa mpa;
     private LinkedHashSet<Genre> genres;
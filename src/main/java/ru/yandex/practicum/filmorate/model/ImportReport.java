@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ImportReport {
+    private long received;
+    private long imported;
+    private long rejected;
+    private List<ImportError> errors;
+}
@@ -12,6 +12,11 @@ import java.util.Set;
 @Builder
 public class User {
     private long id;
+    /**
+     * Incremented on every update. A PUT carrying the version updates the user only if it is still
+     * at that version, a PUT without it always does.
+     */
+    private Long version;
     private String name;
     private Set<Long> friends = new HashSet<>();
 
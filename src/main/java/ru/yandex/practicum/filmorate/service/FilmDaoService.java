@@ -3,14 +3,31 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.filmorate.mapRow.RowTo;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.model.BulkFetchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.storage.AfterCommit;
+import ru.yandex.practicum.filmorate.storage.ResourceVersions;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.PopularFilmsIndex;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -19,24 +36,47 @@ public class FilmDaoService {
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
     private final JdbcTemplate jdbcTemplate;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final FilmSearchIndex filmSearchIndex;
+    private final RecommendationEngine recommendationEngine;
+    private final ResourceVersions resourceVersions;
+    private final LikeWriteBehindQueue likeWriteBehindQueue;
+    private final TransactionTemplate transactionTemplate;
     private static final String QUERY_ADD_LIKE_TO_FILM = "INSERT INTO film_likes" +
             " (film_id, user_id)" +
             " VALUES (?, ?)";
     private static final String QUERY_DELETE_FROM_FILM = "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
-    private static final String QUERY_GET_POPULAR_FILMS = "SELECT f.* " +
+    private static final String QUERY_CHANGE_LIKES_COUNT = "UPDATE films SET likes_count = likes_count + ? " +
+            "WHERE film_id = ?";
+    private static final String QUERY_REBUILD_LIKES_COUNT = "UPDATE films AS f " +
+            "SET likes_count = (SELECT COUNT(*) FROM film_likes AS fl WHERE fl.film_id = f.film_id)";
+    private static final String QUERY_GET_INCONSISTENT_LIKES_COUNT = "SELECT f.film_id " +
             "FROM films AS f " +
             "LEFT JOIN film_likes AS fl ON f.film_id=fl.film_id " +
-            "GROUP BY f.film_id " +
-            "ORDER BY COUNT(fl.user_id) DESC " +
-            "LIMIT ?";
+            "GROUP BY f.film_id, f.likes_count " +
+            "HAVING f.likes_count <> COUNT(fl.user_id)";
+    private static final String QUERY_FILM_EXISTS = "SELECT COUNT(*) FROM films WHERE film_id = ?";
+    private static final String QUERY_USER_EXISTS = "SELECT COUNT(*) FROM users WHERE user_id = ?";
 
     @Autowired
     public FilmDaoService(@Qualifier("filmDbStorage") FilmStorage filmStorage,
                           @Qualifier("userDbStorage") UserStorage userStorage,
-                          JdbcTemplate jdbcTemplate) {
+                          JdbcTemplate jdbcTemplate,
+                          PopularFilmsIndex popularFilmsIndex,
+                          FilmSearchIndex filmSearchIndex,
+                          RecommendationEngine recommendationEngine,
+                          ResourceVersions resourceVersions,
+                          LikeWriteBehindQueue likeWriteBehindQueue,
+                          TransactionTemplate transactionTemplate) {
         this.filmStorage = filmStorage;
         this.userStorage = userStorage;
         this.jdbcTemplate = jdbcTemplate;
+        this.popularFilmsIndex = popularFilmsIndex;
+        this.filmSearchIndex = filmSearchIndex;
+        this.recommendationEngine = recommendationEngine;
+        this.resourceVersions = resourceVersions;
+        this.likeWriteBehindQueue = likeWriteBehindQueue;
+        this.transactionTemplate = transactionTemplate;
     }
 
     public Film createFilm(Film film) {
@@ -51,29 +91,168 @@ public class FilmDaoService {
         return filmStorage.getFilms();
     }
 
+    public List<Film> getFilms(long after, int limit) {
+        return filmStorage.getFilms(after, limit);
+    }
+
     public Film findFilmById(long id) {
         return filmStorage.findFilmById(id);
     }
 
+    /**
+     * Films with the given ids in the order of the ids, loaded with one query plus one for their
+     * genres. Repeated ids are returned once, ids of films that don't exist are listed as missing.
+     */
+    public BulkFetchResult<Film> getFilmsByIds(List<Long> ids) {
+        long[] distinctIds = ids.stream().distinct().mapToLong(Long::longValue).toArray();
+        List<Film> films = filmStorage.findFilmsByIds(distinctIds);
+        Set<Long> found = films.stream().map(Film::getId).collect(Collectors.toSet());
+        return BulkFetchResult.<Film>builder()
+                .items(films)
+                .missingIds(Arrays.stream(distinctIds).filter(id -> !found.contains(id)).boxed().collect(Collectors.toList()))
+                .build();
+    }
+
     public void deleteFilm(long id) {
         filmStorage.deleteFilm(id);
+        likeWriteBehindQueue.filmDeleted(id);
     }
 
+    /**
+     * With the write-behind queue enabled the like is only queued, otherwise it is written in its
+     * own transaction. The transaction is opened here rather than with @Transactional, so a queued
+     * like doesn't take a connection from the pool.
+     */
     public void addLike(long id, long userId) {
-        if (filmStorage.findFilmById(id) != null && userStorage.findUserById(userId) != null) {
-            jdbcTemplate.update(QUERY_ADD_LIKE_TO_FILM, id, userId);
+        if (likeWriteBehindQueue.isEnabled()) {
+            likeWriteBehindQueue.like(id, userId);
+            log.info("User with id {} liked film with id {}", userId, id);
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                int added = jdbcTemplate.update(QUERY_ADD_LIKE_TO_FILM, id, userId);
+                jdbcTemplate.update(QUERY_CHANGE_LIKES_COUNT, added, id);
+                popularFilmsIndex.changeLikes(id, added);
+                resourceVersions.filmChanged(id);
+                recommendationEngine.addLike(id, userId);
+            });
             log.info("User with id {} liked film with id {}", userId, id);
+        } catch (DuplicateKeyException e) {
+            log.info("User with id {} already liked film with id {}", userId, id);
+        } catch (DataIntegrityViolationException e) {
+            checkFilmAndUserExist(id, userId);
+            throw e;
         }
     }
 
+    /**
+     * Inserts likes with one JDBC batch and moves likes_count of every affected film with another.
+     * Film and user existence is enforced by the film_likes foreign keys.
+     */
+    @Transactional
+    public void addLikes(List<FilmLike> likes) {
+        List<Object[]> rows = new ArrayList<>(likes.size());
+        Map<Long, Integer> addedByFilm = new HashMap<>();
+        for (FilmLike like : likes) {
+            rows.add(new Object[]{like.getFilmId(), like.getUserId()});
+            addedByFilm.merge(like.getFilmId(), 1, Integer::sum);
+            recommendationEngine.addLike(like.getFilmId(), like.getUserId());
+        }
+        jdbcTemplate.batchUpdate(QUERY_ADD_LIKE_TO_FILM, rows);
+        List<Object[]> counts = new ArrayList<>(addedByFilm.size());
+        addedByFilm.forEach((filmId, added) -> counts.add(new Object[]{added, filmId}));
+        jdbcTemplate.batchUpdate(QUERY_CHANGE_LIKES_COUNT, counts);
+        popularFilmsIndex.changeLikes(addedByFilm);
+        resourceVersions.filmsChanged(addedByFilm.keySet());
+        log.info("{} likes were added", likes.size());
+    }
+
     public void deleteLike(long id, long userId) {
-        if (filmStorage.findFilmById(id) != null && userStorage.findUserById(userId) != null) {
-            jdbcTemplate.update(QUERY_DELETE_FROM_FILM, id, userId);
+        if (likeWriteBehindQueue.isEnabled()) {
+            likeWriteBehindQueue.unlike(id, userId);
             log.info("User with id {} deleted like for film with id {}", userId, id);
+            return;
         }
+        int deleted = transactionTemplate.execute(status -> {
+            int rows = jdbcTemplate.update(QUERY_DELETE_FROM_FILM, id, userId);
+            if (rows > 0) {
+                jdbcTemplate.update(QUERY_CHANGE_LIKES_COUNT, -rows, id);
+                popularFilmsIndex.changeLikes(id, -rows);
+                resourceVersions.filmChanged(id);
+                recommendationEngine.removeLike(id, userId);
+            }
+            return rows;
+        });
+        if (deleted == 0) {
+            checkFilmAndUserExist(id, userId);
+        }
+        log.info("User with id {} deleted like for film with id {}", userId, id);
+    }
+
+    /**
+     * Tells which side of a like that matched no row or broke a foreign key doesn't exist. Only
+     * called on those failure paths, so a successful like or unlike doesn't look the film and user up.
+     */
+    private void checkFilmAndUserExist(long id, long userId) {
+        if (jdbcTemplate.queryForObject(QUERY_FILM_EXISTS, Integer.class, id) == 0) {
+            throw new FilmNotFoundException(String.format("Film with id %d not found", id));
+        }
+        if (jdbcTemplate.queryForObject(QUERY_USER_EXISTS, Integer.class, userId) == 0) {
+            throw new UserNotFoundException(String.format("User with id %d wasn't found", userId));
+        }
+    }
+
+    /**
+     * Most liked films, optionally only of a genre, an MPA rating and a range of release years.
+     * The ids come from the popular films index, only the films themselves are read from the database.
+     */
+    public List<Film> getPopularFilms(Integer count, Integer genreId, Integer mpaId, Integer fromYear, Integer toYear) {
+        return filmStorage.findFilmsByIds(popularFilmsIndex.getPopularFilmIds(count, genreId, mpaId, fromYear, toYear));
+    }
+
+    /**
+     * Films whose name or description has every word of the query, the last word also as a prefix,
+     * ranked by text relevance blended with likes.
+     */
+    public List<Film> searchFilms(String query, int limit) {
+        return filmStorage.findFilmsByIds(filmSearchIndex.search(query, limit));
+    }
+
+    /**
+     * Films liked by the users whose likes overlap most with the user's, that the user hasn't liked yet.
+     */
+    public List<Film> getRecommendations(long userId, int limit) {
+        if (userStorage.findUsersByIds(new long[]{userId}).isEmpty()) {
+            throw new UserNotFoundException(String.format("User with id %d wasn't found", userId));
+        }
+        likeWriteBehindQueue.flush(userId);
+        return filmStorage.findFilmsByIds(recommendationEngine.recommend(userId, limit));
+    }
+
+    /**
+     * Recomputes films.likes_count from film_likes. Recovery path for counters that drifted,
+     * e.g. after rows were written to film_likes outside addLike/deleteLike. Pending write-behind
+     * likes are flushed before the rebuild transaction opens, so a failed batch is retried pair by
+     * pair in transactions of its own.
+     */
+    public int rebuildLikesCount() {
+        likeWriteBehindQueue.flush();
+        int updated = transactionTemplate.execute(status -> {
+            int rebuilt = jdbcTemplate.update(QUERY_REBUILD_LIKES_COUNT);
+            AfterCommit.run(popularFilmsIndex::load);
+            resourceVersions.filmsReordered();
+            return rebuilt;
+        });
+        log.info("Likes count was rebuilt for {} films", updated);
+        return updated;
     }
 
-    public List<Film> getPopularFilms(Integer count) {
-        return jdbcTemplate.query(QUERY_GET_POPULAR_FILMS, RowTo::mapRowToFilm, count);
+    /**
+     * Returns ids of films whose likes_count does not match the number of rows in film_likes.
+     */
+    public List<Long> findInconsistentLikesCount() {
+        likeWriteBehindQueue.flush();
+        return jdbcTemplate.queryForList(QUERY_GET_INCONSISTENT_LIKES_COUNT, Long.class);
     }
 }
\ No newline at end of file
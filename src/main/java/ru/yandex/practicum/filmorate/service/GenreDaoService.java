@@ -2,11 +2,10 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.GenreNotFoundException;
-import ru.yandex.practicum.filmorate.mapRow.RowTo;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataCache;
 
 import java.util.List;
 
@@ -14,24 +13,25 @@ import java.util.List;
 @Service
 public class GenreDaoService {
 
-    private final JdbcTemplate jdbcTemplate;
-    private static final String QUERY_GET_ALL_GENRES = "SELECT * FROM genres";
-    private static final String QUERY_GET_GENRE_BY_ID = "SELECT * FROM genres WHERE genre_id = ?";
+    private final ReferenceDataCache referenceDataCache;
 
     @Autowired
-    public GenreDaoService(JdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
+    public GenreDaoService(ReferenceDataCache referenceDataCache) {
+        this.referenceDataCache = referenceDataCache;
     }
 
     public List<Genre> getGenres() {
-        return jdbcTemplate.query(QUERY_GET_ALL_GENRES, RowTo::mapRowToGenre);
+        return referenceDataCache.getGenres();
     }
 
     public Genre findGenreById(long id) {
         if(id > 0) {
-            return jdbcTemplate.queryForObject(QUERY_GET_GENRE_BY_ID, RowTo::mapRowToGenre, id);
+            Genre genre = referenceDataCache.findGenreById(id);
+            if (genre != null) {
+                return genre;
+            }
         }
         log.debug("Incorrect id");
-        throw new GenreNotFoundException(String.format("Film with id %d not found", id));
+        throw new GenreNotFoundException(String.format("Genre with id %d not found", id));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,171 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.ImportError;
+import ru.yandex.practicum.filmorate.model.ImportReport;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Bulk ingestion of NDJSON streams (one JSON object per line). Records are validated one by one
+ * with the storages' own rules and written with JDBC batches, one transaction per chunk.
+ * A chunk that fails in the database is replayed record by record, so a bad record is reported
+ * with its line number without aborting the rest of the stream.
+ */
+@Slf4j
+@Service
+public class ImportService {
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final FilmDaoService filmService;
+    private final UserDaoService userService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public ImportService(FilmDbStorage filmStorage,
+                         UserDbStorage userStorage,
+                         FilmDaoService filmService,
+                         UserDaoService userService,
+                         TransactionTemplate transactionTemplate,
+                         ObjectMapper objectMapper) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.filmService = filmService;
+        this.userService = userService;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    public ImportReport importFilms(InputStream inputStream) throws IOException {
+        return importLines(inputStream, Film.class, film -> {
+            if (film.getMpa() == null) {
+                throw new ValidationException("mpa");
+            }
+            filmStorage.validate(film);
+        }, filmStorage::createFilms);
+    }
+
+    public ImportReport importUsers(InputStream inputStream) throws IOException {
+        return importLines(inputStream, User.class, userStorage::validate, userStorage::createUsers);
+    }
+
+    public ImportReport importLikes(InputStream inputStream) throws IOException {
+        return importLines(inputStream, FilmLike.class, like -> {
+            if (like.getFilmId() <= 0) {
+                throw new ValidationException("filmId");
+            } else if (like.getUserId() <= 0) {
+                throw new ValidationException("userId");
+            }
+        }, filmService::addLikes);
+    }
+
+    public ImportReport importFriends(InputStream inputStream) throws IOException {
+        return importLines(inputStream, Friendship.class, friendship -> {
+            if (friendship.getUserId() <= 0) {
+                throw new ValidationException("userId");
+            } else if (friendship.getFriendId() <= 0) {
+                throw new ValidationException("friendId");
+            }
+        }, userService::addFriends);
+    }
+
+    private <T> ImportReport importLines(InputStream inputStream, Class<T> type,
+                                         Consumer<T> validator, Consumer<List<T>> writer) throws IOException {
+        Progress progress = new Progress();
+        List<T> chunk = new ArrayList<>(CHUNK_SIZE);
+        List<Long> chunkLines = new ArrayList<>(CHUNK_SIZE);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            progress.received++;
+            try {
+                T record = objectMapper.readValue(line, type);
+                validator.accept(record);
+                chunk.add(record);
+                chunkLines.add(lineNumber);
+            } catch (JsonProcessingException e) {
+                progress.reject(lineNumber, e.getOriginalMessage());
+            } catch (RuntimeException e) {
+                progress.reject(lineNumber, e.getMessage());
+            }
+            if (chunk.size() == CHUNK_SIZE) {
+                writeChunk(chunk, chunkLines, writer, progress);
+                chunk.clear();
+                chunkLines.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(chunk, chunkLines, writer, progress);
+        }
+        log.info("Import of {} finished: {} received, {} imported, {} rejected",
+                type.getSimpleName(), progress.received, progress.imported, progress.rejected);
+        return ImportReport.builder()
+                .received(progress.received)
+                .imported(progress.imported)
+                .rejected(progress.rejected)
+                .errors(progress.errors)
+                .build();
+    }
+
+    private <T> void writeChunk(List<T> chunk, List<Long> chunkLines, Consumer<List<T>> writer, Progress progress) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> writer.accept(chunk));
+            progress.imported += chunk.size();
+        } catch (DataAccessException e) {
+            log.debug("Chunk failed, retrying record by record", e);
+            for (int i = 0; i < chunk.size(); i++) {
+                List<T> single = List.of(chunk.get(i));
+                try {
+                    transactionTemplate.executeWithoutResult(status -> writer.accept(single));
+                    progress.imported++;
+                } catch (DataAccessException recordException) {
+                    progress.reject(chunkLines.get(i), recordException.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    private static class Progress {
+        private long received;
+        private long imported;
+        private long rejected;
+        private final List<ImportError> errors = new ArrayList<>();
+
+        private void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(ImportError.builder().line(line).message(message).build());
+            }
+        }
+    }
+}
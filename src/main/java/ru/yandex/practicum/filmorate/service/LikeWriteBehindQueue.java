@@ -0,0 +1,273 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.storage.LongSortedSet;
+import ru.yandex.practicum.filmorate.storage.ResourceVersions;
+import ru.yandex.practicum.filmorate.storage.film.PopularFilmsIndex;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Opt-in write-behind pipeline for likes ({@code filmorate.likes.write-behind.enabled}).
+ * <p>
+ * Film and user ids are checked against sets of ids already seen in the database, so a like
+ * costs no query once both ids are known. Like and unlike events are coalesced per (film, user)
+ * pair, the last event wins, and are written with JDBC batches in one transaction every
+ * {@code flush-interval-ms} or as soon as {@code batch-size} pairs are pending. Reads of a user's
+ * own likes call {@link #flush(long)} first, which writes only that user's pending events, so a
+ * user always sees their own likes; rankings over all users follow the queue within one flush
+ * interval. Pending events are flushed on shutdown. The film's ETag version is bumped both when a like is queued and
+ * when it is written, so a film read in between is never cached past the flush.
+ * <p>
+ * A batch rejected by the database, e.g. because a film was deleted after it was liked, is replayed
+ * pair by pair and the pairs that still fail are dropped with a warning. Any other failure, such as
+ * no connection, puts the events back unless a newer event for the same pair has arrived.
+ * Deleted films and users are forgotten through {@link #filmDeleted(long)} and {@link #userDeleted(long)},
+ * so likes of them are rejected again instead of being queued and dropped.
+ */
+@Slf4j
+@Component
+public class LikeWriteBehindQueue {
+
+    private static final String QUERY_FILM_EXISTS = "SELECT COUNT(*) FROM films WHERE film_id = ?";
+    private static final String QUERY_USER_EXISTS = "SELECT COUNT(*) FROM users WHERE user_id = ?";
+    private static final String QUERY_ADD_LIKE_IF_ABSENT = "INSERT INTO film_likes (film_id, user_id) " +
+            "SELECT ?, ? WHERE NOT EXISTS (SELECT 1 FROM film_likes WHERE film_id = ? AND user_id = ?)";
+    private static final String QUERY_DELETE_LIKE = "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
+    private static final String QUERY_CHANGE_LIKES_COUNT = "UPDATE films SET likes_count = likes_count + ? " +
+            "WHERE film_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final ResourceVersions resourceVersions;
+    private final RecommendationEngine recommendationEngine;
+    private final boolean enabled;
+    private final long flushIntervalMs;
+    private final int batchSize;
+    private final LongSortedSet knownFilmIds = new LongSortedSet();
+    private final LongSortedSet knownUserIds = new LongSortedSet();
+    private final Map<FilmLike, Boolean> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private ScheduledExecutorService flusher;
+
+    @Autowired
+    public LikeWriteBehindQueue(JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                PopularFilmsIndex popularFilmsIndex,
+                                ResourceVersions resourceVersions,
+                                RecommendationEngine recommendationEngine,
+                                @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                                @Value("${filmorate.likes.write-behind.flush-interval-ms:200}") long flushIntervalMs,
+                                @Value("${filmorate.likes.write-behind.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.popularFilmsIndex = popularFilmsIndex;
+        this.resourceVersions = resourceVersions;
+        this.recommendationEngine = recommendationEngine;
+        this.enabled = enabled;
+        this.flushIntervalMs = flushIntervalMs;
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "likes-flush"));
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Likes are written behind every {} ms or {} pending likes", flushIntervalMs, batchSize);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void like(long filmId, long userId) {
+        enqueue(filmId, userId, true);
+    }
+
+    public void unlike(long filmId, long userId) {
+        enqueue(filmId, userId, false);
+    }
+
+    /**
+     * Writes all pending likes. Flushes are serialised, so when this returns every like queued
+     * before the call is in the database.
+     */
+    public void flush() {
+        flush(like -> true);
+    }
+
+    /**
+     * Writes the pending likes and unlikes of one user, leaving the rest of the queue to the next flush.
+     */
+    public void flush(long userId) {
+        flush(like -> like.getUserId() == userId);
+    }
+
+    /**
+     * Forgets a deleted film and drops its pending likes.
+     */
+    public void filmDeleted(long filmId) {
+        knownFilmIds.remove(filmId);
+        pending.keySet().removeIf(like -> like.getFilmId() == filmId);
+    }
+
+    /**
+     * Forgets a deleted user and drops their pending likes.
+     */
+    public void userDeleted(long userId) {
+        knownUserIds.remove(userId);
+        pending.keySet().removeIf(like -> like.getUserId() == userId);
+    }
+
+    private synchronized void flush(Predicate<FilmLike> filter) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<FilmLike> likes = new ArrayList<>();
+        List<FilmLike> unlikes = new ArrayList<>();
+        for (FilmLike key : pending.keySet()) {
+            if (!filter.test(key)) {
+                continue;
+            }
+            Boolean liked = pending.remove(key);
+            if (liked != null) {
+                (liked ? likes : unlikes).add(key);
+            }
+        }
+        if (likes.isEmpty() && unlikes.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(likes, unlikes));
+        } catch (DataAccessException e) {
+            log.debug("Likes batch failed, retrying like by like", e);
+            likes.forEach(like -> writeSingle(List.of(like), List.of()));
+            unlikes.forEach(unlike -> writeSingle(List.of(), List.of(unlike)));
+        } catch (RuntimeException e) {
+            likes.forEach(like -> pending.putIfAbsent(like, true));
+            unlikes.forEach(unlike -> pending.putIfAbsent(unlike, false));
+            throw e;
+        }
+        log.debug("{} likes and {} unlikes were flushed", likes.size(), unlikes.size());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        flusher.awaitTermination(flushIntervalMs * 10, TimeUnit.MILLISECONDS);
+        flush();
+        log.info("Likes queue drained");
+    }
+
+    private void enqueue(long filmId, long userId, boolean liked) {
+        if (!exists(knownFilmIds, QUERY_FILM_EXISTS, filmId)) {
+            throw new FilmNotFoundException(String.format("Film with id %d not found", filmId));
+        }
+        if (!exists(knownUserIds, QUERY_USER_EXISTS, userId)) {
+            throw new UserNotFoundException(String.format("User with id %d wasn't found", userId));
+        }
+        pending.put(FilmLike.builder().filmId(filmId).userId(userId).build(), liked);
+        resourceVersions.filmChanged(filmId);
+        if (pending.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushRequested.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    private boolean exists(LongSortedSet knownIds, String query, long id) {
+        if (knownIds.contains(id)) {
+            return true;
+        }
+        Integer count = jdbcTemplate.queryForObject(query, Integer.class, id);
+        if (count == null || count == 0) {
+            return false;
+        }
+        knownIds.add(id);
+        return true;
+    }
+
+    private void write(List<FilmLike> likes, List<FilmLike> unlikes) {
+        Map<Long, Integer> deltas = new HashMap<>();
+        Set<Long> changed = new HashSet<>();
+        List<Object[]> likeRows = new ArrayList<>(likes.size());
+        for (FilmLike like : likes) {
+            likeRows.add(new Object[]{like.getFilmId(), like.getUserId(), like.getFilmId(), like.getUserId()});
+        }
+        int[] added = jdbcTemplate.batchUpdate(QUERY_ADD_LIKE_IF_ABSENT, likeRows);
+        for (int i = 0; i < added.length; i++) {
+            deltas.merge(likes.get(i).getFilmId(), added[i], Integer::sum);
+            if (added[i] > 0) {
+                changed.add(likes.get(i).getFilmId());
+                recommendationEngine.addLike(likes.get(i).getFilmId(), likes.get(i).getUserId());
+            }
+        }
+        List<Object[]> unlikeRows = new ArrayList<>(unlikes.size());
+        for (FilmLike unlike : unlikes) {
+            unlikeRows.add(new Object[]{unlike.getFilmId(), unlike.getUserId()});
+        }
+        int[] deleted = jdbcTemplate.batchUpdate(QUERY_DELETE_LIKE, unlikeRows);
+        for (int i = 0; i < deleted.length; i++) {
+            deltas.merge(unlikes.get(i).getFilmId(), -deleted[i], Integer::sum);
+            if (deleted[i] > 0) {
+                changed.add(unlikes.get(i).getFilmId());
+                recommendationEngine.removeLike(unlikes.get(i).getFilmId(), unlikes.get(i).getUserId());
+            }
+        }
+        List<Object[]> countRows = new ArrayList<>(deltas.size());
+        deltas.forEach((filmId, delta) -> {
+            if (delta != 0) {
+                countRows.add(new Object[]{delta, filmId});
+            }
+        });
+        jdbcTemplate.batchUpdate(QUERY_CHANGE_LIKES_COUNT, countRows);
+        popularFilmsIndex.changeLikes(deltas);
+        resourceVersions.filmsChanged(changed);
+    }
+
+    private void writeSingle(List<FilmLike> likes, List<FilmLike> unlikes) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(likes, unlikes));
+        } catch (DataAccessException e) {
+            log.warn("Dropped like change {}: {}", likes.isEmpty() ? unlikes : likes, e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Likes flush failed", e);
+        }
+    }
+}
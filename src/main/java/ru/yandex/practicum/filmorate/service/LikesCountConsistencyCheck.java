@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares films.likes_count with film_likes every {@code filmorate.likes.consistency-check-interval-ms}
+ * and rebuilds the counters when any of them drifted. 0 turns the check off.
+ */
+@Slf4j
+@Component
+public class LikesCountConsistencyCheck {
+
+    private static final int LOGGED_FILM_IDS = 20;
+
+    private final FilmDaoService filmService;
+    private final long intervalMs;
+    private ScheduledExecutorService checker;
+
+    @Autowired
+    public LikesCountConsistencyCheck(FilmDaoService filmService,
+                                      @Value("${filmorate.likes.consistency-check-interval-ms:3600000}") long intervalMs) {
+        this.filmService = filmService;
+        this.intervalMs = intervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (intervalMs > 0) {
+            checker = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "likes-count-check"));
+            checker.scheduleWithFixedDelay(this::checkQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (checker != null) {
+            checker.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the number of films whose likes count was rebuilt, 0 if all of them were consistent.
+     */
+    public int check() {
+        List<Long> inconsistent = filmService.findInconsistentLikesCount();
+        if (inconsistent.isEmpty()) {
+            return 0;
+        }
+        log.warn("Likes count of {} films disagrees with film_likes, e.g. films {}", inconsistent.size(),
+                inconsistent.subList(0, Math.min(inconsistent.size(), LOGGED_FILM_IDS)));
+        filmService.rebuildLikesCount();
+        return inconsistent.size();
+    }
+
+    private void checkQuietly() {
+        try {
+            check();
+        } catch (RuntimeException e) {
+            log.error("Likes count consistency check failed", e);
+        }
+    }
+}
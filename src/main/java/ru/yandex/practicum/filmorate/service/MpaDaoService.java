@@ -2,11 +2,10 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.MpaNotFoundException;
-import ru.yandex.practicum.filmorate.mapRow.RowTo;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataCache;
 
 import java.util.List;
 
@@ -14,24 +13,25 @@ import java.util.List;
 @Service
 public class MpaDaoService {
 
-    private final JdbcTemplate jdbcTemplate;
-    private static final String QUERY_GET_MPA_BY_ID = "SELECT * FROM mpa_ratings WHERE mpa_rating_id = ?";
-    private static final String QUERY_GET_ALL_MPA = "SELECT * FROM mpa_ratings";
+    private final ReferenceDataCache referenceDataCache;
 
     @Autowired
-    public MpaDaoService(JdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
+    public MpaDaoService(ReferenceDataCache referenceDataCache) {
+        this.referenceDataCache = referenceDataCache;
     }
 
     public List<Mpa> getMpa() {
-        return jdbcTemplate.query(QUERY_GET_ALL_MPA, RowTo::mapRowToMpa);
+        return referenceDataCache.getMpa();
     }
 
     public Mpa findMpaById(long id) {
         if(id > 0) {
-            return jdbcTemplate.queryForObject(QUERY_GET_MPA_BY_ID, RowTo::mapRowToMpa, id);
+            Mpa mpa = referenceDataCache.findMpaById(id);
+            if (mpa != null) {
+                return mpa;
+            }
         }
         log.debug("Incorrect id");
-        throw new MpaNotFoundException(String.format("Film with id %d not found", id));
+        throw new MpaNotFoundException(String.format("Mpa with id %d not found", id));
     }
 }
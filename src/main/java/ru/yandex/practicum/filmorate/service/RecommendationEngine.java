@@ -0,0 +1,221 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.AfterCommit;
+import ru.yandex.practicum.filmorate.storage.LongSortedSet;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Film recommendations by user-based collaborative filtering over an in-memory like matrix,
+ * kept as sorted film ids per user and sorted user ids per film.
+ * <p>
+ * The users sharing likes with the given user are found through the likers of each film the user
+ * liked, counting the overlap in parallel. The {@link #NEIGHBOURS} users with the highest Jaccard
+ * similarity then vote for the films they liked and the user didn't, each vote weighted by the
+ * voter's similarity. Films with more than {@link #MAX_FILM_LIKERS} likers are too popular to tell
+ * tastes apart and are not used to find similar users.
+ * <p>
+ * Likes are applied once their transaction commits, and the matrix is rebuilt from film_likes
+ * every {@code filmorate.recommendations.rebuild-interval-ms} to correct any drift.
+ */
+@Slf4j
+@Component
+public class RecommendationEngine {
+
+    private static final String QUERY_GET_ALL_LIKES = "SELECT film_id, user_id FROM film_likes";
+    private static final int NEIGHBOURS = 20;
+    private static final int MAX_FILM_LIKERS = 10_000;
+    private static final long[] NO_IDS = new long[0];
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long rebuildIntervalMs;
+    private final Object rebuildLock = new Object();
+    private volatile LikeMatrix matrix = new LikeMatrix();
+    private List<Change> changesDuringRebuild;
+    private ScheduledExecutorService rebuilder;
+
+    @Autowired
+    public RecommendationEngine(JdbcTemplate jdbcTemplate,
+                                @Value("${filmorate.recommendations.rebuild-interval-ms:3600000}") long rebuildIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.rebuildIntervalMs = rebuildIntervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        rebuild();
+        if (rebuildIntervalMs > 0) {
+            rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "recommendations-rebuild"));
+            rebuilder.scheduleWithFixedDelay(this::rebuildQuietly, rebuildIntervalMs, rebuildIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (rebuilder != null) {
+            rebuilder.shutdownNow();
+        }
+    }
+
+    public void addLike(long filmId, long userId) {
+        AfterCommit.run(() -> apply(new Change(filmId, userId, true)));
+    }
+
+    public void removeLike(long filmId, long userId) {
+        AfterCommit.run(() -> apply(new Change(filmId, userId, false)));
+    }
+
+    /**
+     * Reloads the matrix from film_likes. Likes committed while the table is read are applied to
+     * the new matrix too, and it replaces the current one under the same lock as likes are applied,
+     * so no like can slip in between. A failed reload keeps the current matrix.
+     */
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            synchronized (this) {
+                changesDuringRebuild = new ArrayList<>();
+            }
+            LikeMatrix rebuilt = new LikeMatrix();
+            boolean loaded = false;
+            try {
+                jdbcTemplate.query(QUERY_GET_ALL_LIKES, resultSet -> {
+                    rebuilt.apply(resultSet.getLong("film_id"), resultSet.getLong("user_id"), true);
+                });
+                loaded = true;
+            } finally {
+                synchronized (this) {
+                    if (loaded) {
+                        changesDuringRebuild.forEach(change -> rebuilt.apply(change.filmId, change.userId, change.liked));
+                        matrix = rebuilt;
+                    }
+                    changesDuringRebuild = null;
+                }
+            }
+            log.info("Recommendations rebuilt for {} users and {} films", rebuilt.userFilms.size(), rebuilt.filmUsers.size());
+        }
+    }
+
+    /**
+     * Ids of the films recommended to the user, best first; ties go to the lower id.
+     */
+    public long[] recommend(long userId, int limit) {
+        LikeMatrix likes = matrix;
+        long[] liked = likes.filmsOf(userId);
+        if (liked.length == 0) {
+            return NO_IDS;
+        }
+        Map<Long, Integer> overlaps = Arrays.stream(liked).parallel()
+                .mapToObj(likes::usersOf)
+                .filter(users -> users.length <= MAX_FILM_LIKERS)
+                .collect(HashMap::new, (counts, users) -> {
+                    for (long user : users) {
+                        if (user != userId) {
+                            counts.merge(user, 1, Integer::sum);
+                        }
+                    }
+                }, (counts, other) -> other.forEach((user, count) -> counts.merge(user, count, Integer::sum)));
+        List<Map.Entry<Long, Double>> neighbours = overlaps.entrySet().parallelStream()
+                .map(entry -> Map.entry(entry.getKey(), jaccard(entry.getValue(), liked.length, likes.likeCount(entry.getKey()))))
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(NEIGHBOURS)
+                .collect(Collectors.toList());
+        Map<Long, Double> scores = new HashMap<>();
+        for (Map.Entry<Long, Double> neighbour : neighbours) {
+            for (long filmId : likes.filmsOf(neighbour.getKey())) {
+                if (Arrays.binarySearch(liked, filmId) < 0) {
+                    scores.merge(filmId, neighbour.getValue(), Double::sum);
+                }
+            }
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .mapToLong(Map.Entry::getKey)
+                .toArray();
+    }
+
+    private static double jaccard(int overlap, int likes, int otherLikes) {
+        // the other user's likes may have changed since the overlap was counted
+        return (double) overlap / Math.max(likes + otherLikes - overlap, overlap);
+    }
+
+    private synchronized void apply(Change change) {
+        matrix.apply(change.filmId, change.userId, change.liked);
+        if (changesDuringRebuild != null) {
+            changesDuringRebuild.add(change);
+        }
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.error("Recommendations rebuild failed", e);
+        }
+    }
+
+    private static final class LikeMatrix {
+        private final Map<Long, LongSortedSet> userFilms = new ConcurrentHashMap<>();
+        private final Map<Long, LongSortedSet> filmUsers = new ConcurrentHashMap<>();
+
+        private void apply(long filmId, long userId, boolean liked) {
+            if (liked) {
+                userFilms.computeIfAbsent(userId, key -> new LongSortedSet()).add(filmId);
+                filmUsers.computeIfAbsent(filmId, key -> new LongSortedSet()).add(userId);
+            } else {
+                remove(userFilms, userId, filmId);
+                remove(filmUsers, filmId, userId);
+            }
+        }
+
+        private long[] filmsOf(long userId) {
+            LongSortedSet films = userFilms.get(userId);
+            return films == null ? NO_IDS : films.toLongArray();
+        }
+
+        private long[] usersOf(long filmId) {
+            LongSortedSet users = filmUsers.get(filmId);
+            return users == null ? NO_IDS : users.toLongArray();
+        }
+
+        private int likeCount(long userId) {
+            LongSortedSet films = userFilms.get(userId);
+            return films == null ? 0 : films.size();
+        }
+
+        private static void remove(Map<Long, LongSortedSet> rows, long row, long column) {
+            LongSortedSet ids = rows.get(row);
+            if (ids != null) {
+                ids.remove(column);
+            }
+        }
+    }
+
+    private static final class Change {
+        private final long filmId;
+        private final long userId;
+        private final boolean liked;
+
+        private Change(long filmId, long userId, boolean liked) {
+            this.filmId = filmId;
+            this.userId = userId;
+            this.liked = liked;
+        }
+    }
+}
@@ -3,14 +3,22 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
-import ru.yandex.practicum.filmorate.mapRow.RowTo;
+import ru.yandex.practicum.filmorate.model.BulkFetchResult;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraphIndex;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -18,31 +26,24 @@ public class UserDaoService {
 
     private final UserStorage userStorage;
     private final JdbcTemplate jdbcTemplate;
+    private final FriendGraphIndex friendGraphIndex;
+    private final LikeWriteBehindQueue likeWriteBehindQueue;
     private static final String QUERY_ADD_FRIEND = "INSERT INTO friends " +
             "(request_user_id, accept_user_id, is_accepted) " +
             "VALUES (?, ?, ?)";
     private static final String QUERY_DELETE_FRIEND = "DELETE FROM friends WHERE request_user_id = ? " +
             "AND accept_user_id = ?";
-    private static final String GET_ALL_FRIENDS = "SELECT * " +
-            "FROM users " +
-            "WHERE user_id IN (SELECT accept_user_id " +
-            "FROM friends " +
-            "WHERE request_user_id=?)";
-    private static final String QUERY_GET_COMMON_FRIENDS = "SELECT * " +
-            "FROM users " +
-            "WHERE user_id IN (SELECT accept_user_id " +
-            "FROM friends " +
-            "WHERE request_user_id=? " +
-            "AND accept_user_id IN " +
-            "(SELECT accept_user_id " +
-            "FROM friends " +
-            "WHERE request_user_id=?))";
+    private static final String QUERY_USER_EXISTS = "SELECT COUNT(*) FROM users WHERE user_id = ?";
 
     @Autowired
     public UserDaoService(@Qualifier("userDbStorage") UserStorage userStorage,
-                          JdbcTemplate jdbcTemplate) {
+                          JdbcTemplate jdbcTemplate,
+                          FriendGraphIndex friendGraphIndex,
+                          LikeWriteBehindQueue likeWriteBehindQueue) {
         this.userStorage = userStorage;
         this.jdbcTemplate = jdbcTemplate;
+        this.friendGraphIndex = friendGraphIndex;
+        this.likeWriteBehindQueue = likeWriteBehindQueue;
     }
 
     public User createUser(User user) {
@@ -57,41 +58,110 @@ public class UserDaoService {
         return userStorage.getUsers();
     }
 
+    public List<User> getUsers(long after, int limit) {
+        return userStorage.getUsers(after, limit);
+    }
+
     public User findUserById(long id) {
         return userStorage.findUserById(id);
     }
 
+    /**
+     * Users with the given ids in the order of the ids, loaded with one query. Repeated ids are
+     * returned once, ids of users that don't exist are listed as missing.
+     */
+    public BulkFetchResult<User> getUsersByIds(List<Long> ids) {
+        long[] distinctIds = ids.stream().distinct().mapToLong(Long::longValue).toArray();
+        List<User> users = userStorage.findUsersByIds(distinctIds);
+        Set<Long> found = users.stream().map(User::getId).collect(Collectors.toSet());
+        return BulkFetchResult.<User>builder()
+                .items(users)
+                .missingIds(Arrays.stream(distinctIds).filter(id -> !found.contains(id)).boxed().collect(Collectors.toList()))
+                .build();
+    }
+
     public void deleteUser(long id) {
         userStorage.deleteUser(id);
+        likeWriteBehindQueue.userDeleted(id);
     }
 
+    /**
+     * Inserts the friend edge in one statement; the friends foreign keys check that both users exist,
+     * and only a violation of them looks the users up to tell which one is missing.
+     */
     public void addFriend(long id, long friendId) {
-        if (userStorage.findUserById(id) != null && userStorage.findUserById(friendId) != null) {
+        try {
             jdbcTemplate.update(QUERY_ADD_FRIEND, id, friendId, "true");
+            friendGraphIndex.addFriend(id, friendId);
             log.info("Friend with id {} was added for user with id {}", friendId, id);
+        } catch (DuplicateKeyException e) {
+            log.info("User with id {} is already a friend of user with id {}", friendId, id);
+        } catch (DataIntegrityViolationException e) {
+            checkUserExists(id);
+            checkUserExists(friendId);
+            throw e;
+        }
+    }
+
+    /**
+     * Inserts friend edges with one JDBC batch. User existence is enforced by the friends foreign keys.
+     */
+    public void addFriends(List<Friendship> friendships) {
+        List<Object[]> rows = new ArrayList<>(friendships.size());
+        for (Friendship friendship : friendships) {
+            rows.add(new Object[]{friendship.getUserId(), friendship.getFriendId(), "true"});
         }
+        jdbcTemplate.batchUpdate(QUERY_ADD_FRIEND, rows);
+        for (Friendship friendship : friendships) {
+            friendGraphIndex.addFriend(friendship.getUserId(), friendship.getFriendId());
+        }
+        log.info("{} friends were added", friendships.size());
     }
 
+    /**
+     * Deletes the friend edge in one statement; the user is looked up only if no edge was deleted.
+     */
     public void deleteFriend(long id, long friendId) {
-        if (findUserById(id) != null && getFriends(id).contains(findUserById(friendId))) {
-            jdbcTemplate.update(QUERY_DELETE_FRIEND, id, friendId);
+        if (jdbcTemplate.update(QUERY_DELETE_FRIEND, id, friendId) > 0) {
+            friendGraphIndex.deleteFriend(id, friendId);
             log.info("Friend with id {} was deleted from user list", id);
         } else {
+            checkUserExists(id);
             log.info("Incorrect friend id {}", friendId);
             throw new UserNotFoundException(
                     String.format("Impossible to remove user with id %d from friends list. User not found", friendId));
         }
     }
 
+    private void checkUserExists(long id) {
+        if (jdbcTemplate.queryForObject(QUERY_USER_EXISTS, Integer.class, id) == 0) {
+            throw new UserNotFoundException(String.format("User with id %d wasn't found", id));
+        }
+    }
+
     public List<User> getFriends(long id) {
         if (userStorage.findUserById(id) != null) {
-            return jdbcTemplate.query(GET_ALL_FRIENDS, RowTo::mapRowToUser, id);
+            return userStorage.findUsersByIds(friendGraphIndex.getFriendIds(id));
         } else {
             return null;
         }
     }
 
+    /**
+     * Friends of the user's friends, ranked by the number of mutual friends.
+     */
+    public List<User> getFriendSuggestions(long id, int limit) {
+        if (userStorage.findUsersByIds(new long[]{id}).isEmpty()) {
+            throw new UserNotFoundException(String.format("User with id %d wasn't found", id));
+        }
+        return userStorage.findUsersByIds(friendGraphIndex.getFriendSuggestionIds(id, limit));
+    }
+
+    /**
+     * Intersects the two sorted friend id lists from {@link FriendGraphIndex} and loads only
+     * the resulting users, with a single query.
+     */
     public List<User> getCommonFriends(long id, long otherId) {
-        return jdbcTemplate.query(QUERY_GET_COMMON_FRIENDS, RowTo::mapRowToUser, id, otherId);
+        return userStorage.findUsersByIds(friendGraphIndex.getCommonFriendIds(id, otherId));
     }
 }
\ No newline at end of file
@@ -5,10 +5,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.LongSortedSet;
 import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
-import java.util.ArrayList;
 import java.util.List;
 
 @Slf4j
@@ -56,8 +56,7 @@ public class UserService {
     }
 
     public void deleteFriend(long id, long friendId) {
-        if (userStorage.findUserById(id) != null && userStorage.findUserById(id).getFriends().contains(friendId)) {
-            userStorage.findUserById(id).getFriends().remove(friendId);
+        if (userStorage.findUserById(id).getFriends().remove(friendId)) {
             log.info("Friend with id {} was deleted from user list", friendId);
 
             userStorage.findUserById(friendId).getFriends().remove(id);
@@ -70,24 +69,13 @@ public class UserService {
     }
 
     public List<User> getFriends(long id) {
-        List<User> friends = new ArrayList<>();
-        if (userStorage.findUserById(id) != null && !userStorage.findUserById(id).getFriends().isEmpty()) {
-            for(long friendId : userStorage.findUserById(id).getFriends()){
-                friends.add(userStorage.findUserById(friendId));
-            }
-            return friends;
-        } else {
-            return null;
-        }
+        long[] friendIds = LongSortedSet.toLongArray(userStorage.findUserById(id).getFriends());
+        return friendIds.length == 0 ? null : userStorage.findUsersByIds(friendIds);
     }
 
     public List<User> getCommonFriends(long id, long otherId) {
-        List<User> commonFriends = new ArrayList<>();
-        for(long friendId : userStorage.findUserById(id).getFriends()) {
-            if (userStorage.findUserById(otherId).getFriends().contains(friendId)) {
-                commonFriends.add(userStorage.findUserById(friendId));
-            }
-        }
-        return commonFriends;
+        long[] friendIds = LongSortedSet.toLongArray(userStorage.findUserById(id).getFriends());
+        long[] otherFriendIds = LongSortedSet.toLongArray(userStorage.findUserById(otherId).getFriends());
+        return userStorage.findUsersByIds(LongSortedSet.intersect(friendIds, otherFriendIds));
     }
 }
\ No newline at end of file
@@ -0,0 +1,400 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Snapshots of InMemoryFilmStorage and InMemoryUserStorage, with likes and friends, to
+ * {@code filmorate.storage.snapshot.file} every {@code filmorate.storage.snapshot.interval-ms} and
+ * at shutdown; the snapshot is loaded back at startup. Enabled with
+ * {@code filmorate.storage.snapshot.enabled=true}.
+ * <p>
+ * A snapshot walks the storages' concurrent maps while writes go on, so it is a fuzzy cut: every
+ * film and user is captured with the likes or friends it had at that moment, but writes made
+ * during the walk may or may not be included. It is written to a temporary file, synced and moved
+ * over the previous snapshot, so a crash never leaves a half-written snapshot behind.
+ * <p>
+ * Films and users are written in chunks of {@link #CHUNK_SIZE} with their own length and CRC32C;
+ * ids are varints and likes and friends sorted varint deltas. Loading reads the chunk headers and
+ * then decodes the chunks in parallel.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.snapshot.enabled", havingValue = "true")
+public class InMemorySnapshotter {
+
+    private static final int MAGIC = 0x464d5331;
+    private static final int VERSION = 1;
+    private static final int CHUNK_SIZE = 4096;
+    private static final int CHUNK_HEADER_SIZE = 4 + 4 + 4;
+
+    private final InMemoryFilmStorage filmStorage;
+    private final InMemoryUserStorage userStorage;
+    private final Path file;
+    private final long intervalMs;
+    private ScheduledExecutorService snapshotter;
+
+    @Autowired
+    public InMemorySnapshotter(InMemoryFilmStorage filmStorage, InMemoryUserStorage userStorage,
+                               @Value("${filmorate.storage.snapshot.file:./data/in-memory.snapshot}") String file,
+                               @Value("${filmorate.storage.snapshot.interval-ms:300000}") long intervalMs) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.file = Path.of(file);
+        this.intervalMs = intervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        load();
+        if (intervalMs > 0) {
+            snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "in-memory-snapshot"));
+            snapshotter.scheduleWithFixedDelay(this::snapshotQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (snapshotter != null) {
+            snapshotter.shutdown();
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        snapshotQuietly();
+    }
+
+    /**
+     * Writes a snapshot of both storages without blocking their writers.
+     */
+    public synchronized void snapshot() {
+        long started = System.nanoTime();
+        List<Film> films = filmStorage.getFilms();
+        List<User> users = userStorage.getUsers();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION).flip();
+                writeFully(channel, header);
+                writeSection(channel, films, InMemorySnapshotter::writeFilm);
+                writeSection(channel, users, InMemorySnapshotter::writeUser);
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Can't write snapshot %s", file), e);
+        }
+        log.info("In-memory snapshot of {} films and {} users written in {} ms", films.size(), users.size(),
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Loads the snapshot into the storages, if there is one. A corrupt snapshot stops the startup
+     * rather than being replaced by a snapshot of empty storages.
+     */
+    public void load() {
+        if (!Files.exists(file)) {
+            log.info("No in-memory snapshot at {}", file);
+            return;
+        }
+        long started = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = readFully(channel, 0, 8);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IllegalStateException(String.format("%s is not a snapshot of version %d", file, VERSION));
+            }
+            List<Chunk> filmChunks = new ArrayList<>();
+            List<Chunk> userChunks = new ArrayList<>();
+            long position = readChunks(channel, 8, filmChunks);
+            readChunks(channel, position, userChunks);
+            filmChunks.parallelStream().forEach(chunk -> filmStorage.restoreFilms(
+                    readChunk(channel, chunk, InMemorySnapshotter::readFilm)));
+            userChunks.parallelStream().forEach(chunk -> userStorage.restoreUsers(
+                    readChunk(channel, chunk, InMemorySnapshotter::readUser)));
+            log.info("In-memory snapshot of {} films and {} users loaded in {} ms",
+                    filmChunks.stream().mapToInt(chunk -> chunk.count).sum(),
+                    userChunks.stream().mapToInt(chunk -> chunk.count).sum(),
+                    (System.nanoTime() - started) / 1_000_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Can't read snapshot %s", file), e);
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            log.error("In-memory snapshot failed", e);
+        }
+    }
+
+    private static <T> void writeSection(FileChannel channel, List<T> values, Encoder<T> encoder) throws IOException {
+        int chunks = (values.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        writeFully(channel, ByteBuffer.allocate(4).putInt(chunks).flip());
+        Output out = new Output();
+        for (int from = 0; from < values.size(); from += CHUNK_SIZE) {
+            List<T> chunk = values.subList(from, Math.min(from + CHUNK_SIZE, values.size()));
+            out.reset();
+            for (T value : chunk) {
+                encoder.write(out, value);
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(out.bytes, 0, out.size);
+            writeFully(channel, ByteBuffer.allocate(CHUNK_HEADER_SIZE)
+                    .putInt(out.size).putInt((int) crc.getValue()).putInt(chunk.size()).flip());
+            writeFully(channel, ByteBuffer.wrap(out.bytes, 0, out.size));
+        }
+    }
+
+    private long readChunks(FileChannel channel, long position, List<Chunk> chunks) throws IOException {
+        int count = readFully(channel, position, 4).getInt();
+        position += 4;
+        for (int i = 0; i < count; i++) {
+            ByteBuffer header = readFully(channel, position, CHUNK_HEADER_SIZE);
+            Chunk chunk = new Chunk(position + CHUNK_HEADER_SIZE, header.getInt(), header.getInt(), header.getInt());
+            chunks.add(chunk);
+            position = chunk.position + chunk.length;
+        }
+        return position;
+    }
+
+    private <T> List<T> readChunk(FileChannel channel, Chunk chunk, Decoder<T> decoder) {
+        ByteBuffer in;
+        try {
+            in = readFully(channel, chunk.position, chunk.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Can't read snapshot %s", file), e);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(in.duplicate());
+        if ((int) crc.getValue() != chunk.crc) {
+            throw new IllegalStateException(String.format("Snapshot %s is corrupt at %d", file, chunk.position));
+        }
+        List<T> values = new ArrayList<>(chunk.count);
+        for (int i = 0; i < chunk.count; i++) {
+            values.add(decoder.read(in));
+        }
+        return values;
+    }
+
+    private static void writeFilm(Output out, Film film) {
+        out.writeVarLong(film.getId());
+        out.writeVarLong(zigZag(film.getRate()));
+        out.writeVarLong(film.getMpa() == null ? 0 : film.getMpa().getId() + 1L);
+        if (film.getMpa() != null) {
+            out.writeString(film.getMpa().getName());
+        }
+        out.writeVarLong(film.getGenres() == null ? 0 : film.getGenres().size() + 1L);
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                out.writeVarLong(genre.getId());
+                out.writeString(genre.getName());
+            }
+        }
+        out.writeString(film.getName());
+        out.writeString(film.getDescription());
+        out.writeVarLong(zigZag(film.getReleaseDate().toEpochDay()));
+        out.writeVarLong(zigZag(film.getDuration()));
+        out.writeIds(LongSortedSet.toLongArray(film.getLikes()));
+    }
+
+    private static Film readFilm(ByteBuffer in) {
+        long id = readVarLong(in);
+        int rate = (int) unZigZag(readVarLong(in));
+        long mpaId = readVarLong(in);
+        Mpa mpa = mpaId == 0 ? null : Mpa.builder().id((int) mpaId - 1).name(readString(in)).build();
+        long genreCount = readVarLong(in);
+        LinkedHashSet<Genre> genres = genreCount == 0 ? null : new LinkedHashSet<>();
+        for (long i = 1; i < genreCount; i++) {
+            genres.add(Genre.builder().id((int) readVarLong(in)).name(readString(in)).build());
+        }
+        return Film.builder()
+                .id(id)
+                .rate(rate)
+                .mpa(mpa)
+                .genres(genres)
+                .name(readString(in))
+                .description(readString(in))
+                .releaseDate(LocalDate.ofEpochDay(unZigZag(readVarLong(in))))
+                .duration(unZigZag(readVarLong(in)))
+                .likes(LongSortedSet.ofSorted(readIds(in)))
+                .build();
+    }
+
+    private static void writeUser(Output out, User user) {
+        out.writeVarLong(user.getId());
+        out.writeString(user.getName());
+        out.writeString(user.getEmail());
+        out.writeString(user.getLogin());
+        out.writeVarLong(zigZag(user.getBirthday().toEpochDay()));
+        out.writeIds(LongSortedSet.toLongArray(user.getFriends()));
+    }
+
+    private static User readUser(ByteBuffer in) {
+        return User.builder()
+                .id(readVarLong(in))
+                .name(readString(in))
+                .email(readString(in))
+                .login(readString(in))
+                .birthday(LocalDate.ofEpochDay(unZigZag(readVarLong(in))))
+                .friends(LongSortedSet.ofSorted(readIds(in)))
+                .build();
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = (int) readVarLong(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static long[] readIds(ByteBuffer in) {
+        long[] ids = new long[(int) readVarLong(in)];
+        long previous = 0;
+        for (int i = 0; i < ids.length; i++) {
+            previous += readVarLong(in);
+            ids[i] = previous;
+        }
+        return ids;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException(String.format("Snapshot ends at %d", position + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Growable byte array for one chunk, reused across chunks.
+     */
+    private static final class Output {
+        private byte[] bytes = new byte[1 << 16];
+        private int size;
+
+        private void reset() {
+            size = 0;
+        }
+
+        private void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7fL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        private void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(utf8.length + 1L);
+            ensureCapacity(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+
+        private void writeIds(long[] ids) {
+            writeVarLong(ids.length);
+            long previous = 0;
+            for (long id : ids) {
+                writeVarLong(id - previous);
+                previous = id;
+            }
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+
+    private static final class Chunk {
+        private final long position;
+        private final int length;
+        private final int crc;
+        private final int count;
+
+        private Chunk(long position, int length, int crc, int count) {
+            this.position = position;
+            this.length = length;
+            this.crc = crc;
+            this.count = count;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Encoder<T> {
+        void write(Output out, T value);
+    }
+
+    @FunctionalInterface
+    private interface Decoder<T> {
+        T read(ByteBuffer in);
+    }
+}
@@ -0,0 +1,651 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log-structured store of byte[] values under (a, b) keys of two longs, kept in
+ * fixed-size memory-mapped segment files named {@code <name>-<segment id>.log}. Entities are
+ * stored under (id, 0) and edges under (from id, to id) with an empty value.
+ * <p>
+ * Every write appends a record - length, CRC32C, type, sequence number, key, value - to the
+ * active segment and points the in-memory key index at it, so a read is an index lookup plus a
+ * copy out of the mapping. At startup the segments are replayed: for every key the record with
+ * the highest sequence number wins, and a segment is read up to its first torn or corrupt record,
+ * whose bytes are zeroed before the segment is written again. Writes reach the page cache at once
+ * and survive a crash of the process; {@code forceWrites} also syncs every record to disk.
+ * <p>
+ * {@link #compact(double)} merges the sealed segments into new ones holding only their live
+ * records, without blocking writes. The merge is committed by a manifest file listing the new
+ * and the merged segments, so a crash in the middle either keeps the old segments or finishes
+ * the swap at the next startup. Merged segments get higher ids than the active segment, so at
+ * startup the segment holding the newest record is made active again, not the one with the
+ * highest id.
+ * <p>
+ * A merge drops tombstones, except those that may still hide an older record in a segment outside
+ * the merge, and the tombstone of the highest key ever written while no higher key is stored, so
+ * {@link #highestKey()} survives compaction and id counters built on it never hand out a deleted
+ * id again.
+ */
+@Slf4j
+public class LogStore implements Closeable {
+
+    private static final int HEADER_SIZE = 4 + 4 + 1 + 8 + 8 + 8;
+    private static final int TYPE_OFFSET = 8;
+    private static final int SEQ_OFFSET = 9;
+    private static final int KEY_OFFSET = 17;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String MERGING_SUFFIX = ".log.merging";
+    private static final String MANIFEST_SUFFIX = ".merge";
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Path directory;
+    private final String name;
+    private final int segmentSize;
+    private final boolean forceWrites;
+    private final Pattern segmentName;
+    private final ConcurrentNavigableMap<Key, Long> index = new ConcurrentSkipListMap<>();
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSegmentId = new AtomicInteger(1);
+    private final Object mergeLock = new Object();
+    private long nextSeq = 1;
+    private volatile long highestKey;
+    private Segment active;
+
+    public LogStore(Path directory, String name, int segmentSize, boolean forceWrites) {
+        this.directory = directory;
+        this.name = name;
+        this.segmentSize = segmentSize;
+        this.forceWrites = forceWrites;
+        this.segmentName = Pattern.compile(Pattern.quote(name) + "-(\\d+)(\\.log(?:\\.merging)?)");
+        try {
+            Files.createDirectories(directory);
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Can't open log %s in %s", name, directory), e);
+        }
+    }
+
+    public synchronized void put(long a, long b, byte[] value) {
+        Key key = new Key(a, b);
+        long location = append(PUT, key, value);
+        highestKey = Math.max(highestKey, a);
+        active.live.addAndGet(HEADER_SIZE + value.length);
+        Long previous = index.put(key, location);
+        if (previous != null) {
+            release(previous);
+        }
+    }
+
+    /**
+     * Appends a tombstone for the key. Returns false, writing nothing, if the key isn't stored.
+     */
+    public synchronized boolean remove(long a, long b) {
+        Key key = new Key(a, b);
+        if (!index.containsKey(key)) {
+            return false;
+        }
+        append(DELETE, key, EMPTY);
+        release(index.remove(key));
+        return true;
+    }
+
+    /**
+     * Removes every key (a, *).
+     */
+    public synchronized void removeAll(long a) {
+        for (long b : keys(a)) {
+            remove(a, b);
+        }
+    }
+
+    public byte[] get(long a, long b) {
+        Key key = new Key(a, b);
+        while (true) {
+            Long location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            Segment segment = segments.get(segmentId(location));
+            if (segment != null) {
+                return segment.value(offset(location));
+            }
+            // merged away since the lookup: the index already points to the copy
+        }
+    }
+
+    public boolean contains(long a, long b) {
+        return index.containsKey(new Key(a, b));
+    }
+
+    /**
+     * Sorted b of the keys (a, *), e.g. the targets of the edges from a.
+     */
+    public long[] keys(long a) {
+        return index.subMap(new Key(a, Long.MIN_VALUE), true, new Key(a, Long.MAX_VALUE), true).keySet().stream()
+                .mapToLong(key -> key.b)
+                .toArray();
+    }
+
+    /**
+     * Values of up to limit keys after (after, *), in key order.
+     */
+    public List<byte[]> values(long after, int limit) {
+        List<byte[]> values = new ArrayList<>(Math.min(limit, 1024));
+        for (Key key : index.tailMap(new Key(after, Long.MAX_VALUE), false).keySet()) {
+            if (values.size() == limit) {
+                break;
+            }
+            byte[] value = get(key.a, key.b);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    public List<byte[]> values() {
+        return values(Long.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The largest a ever written, removed keys included, 0 if nothing was.
+     */
+    public long highestKey() {
+        return highestKey;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Share of the sealed segments' bytes taken by overwritten records and tombstones.
+     */
+    public double garbageRatio() {
+        return garbageRatio(sealedSegments());
+    }
+
+    /**
+     * Merges the sealed segments if at least minGarbageRatio of their bytes is garbage. Writes go on
+     * to the active segment meanwhile; a record written during the merge keeps its new location.
+     */
+    public void compact(double minGarbageRatio) {
+        synchronized (mergeLock) {
+            List<Segment> sealed = sealedSegments();
+            double garbage = garbageRatio(sealed);
+            if (sealed.isEmpty() || garbage < minGarbageRatio) {
+                return;
+            }
+            long started = System.nanoTime();
+            try {
+                merge(sealed);
+            } catch (IOException e) {
+                throw new UncheckedIOException(String.format("Compaction of log %s failed", name), e);
+            }
+            log.info("Log {} compacted: {} segments with {}% garbage merged in {} ms", name, sealed.size(),
+                    Math.round(garbage * 100), (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        active.buffer.force();
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    private void open() throws IOException {
+        finishMerge();
+        List<Segment> existing = new ArrayList<>();
+        try (var files = Files.list(directory)) {
+            for (Path path : files.collect(Collectors.toList())) {
+                Matcher matcher = segmentName.matcher(path.getFileName().toString());
+                if (!matcher.matches()) {
+                    continue;
+                }
+                if (matcher.group(2).equals(MERGING_SUFFIX)) {
+                    log.warn("Deleting {} left by an unfinished compaction", path);
+                    Files.delete(path);
+                } else {
+                    existing.add(new Segment(Integer.parseInt(matcher.group(1)), path));
+                }
+            }
+        }
+        existing.sort(Comparator.comparingInt(segment -> segment.id));
+        long started = System.nanoTime();
+        Map<Key, Long> deletedAt = new HashMap<>();
+        for (Segment segment : existing) {
+            segments.put(segment.id, segment);
+            replay(segment, deletedAt);
+            nextSegmentId.set(segment.id + 1);
+        }
+        active = existing.isEmpty() ? newSegment(SEGMENT_SUFFIX) : existing.stream()
+                .max(Comparator.<Segment>comparingLong(segment -> segment.maxSeq).thenComparingInt(segment -> segment.id))
+                .get();
+        segments.put(active.id, active);
+        log.info("Log {} opened: {} keys in {} segments replayed in {} ms", name, index.size(), existing.size(),
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private void replay(Segment segment, Map<Key, Long> deletedAt) {
+        int offset = 0;
+        int size;
+        while ((size = segment.recordSize(offset)) > 0) {
+            Key key = segment.key(offset);
+            long seq = segment.seq(offset);
+            nextSeq = Math.max(nextSeq, seq + 1);
+            segment.addSeq(seq);
+            highestKey = Math.max(highestKey, key.a);
+            Long current = index.get(key);
+            boolean newer = seq > deletedAt.getOrDefault(key, 0L)
+                    && (current == null || seq > segments.get(segmentId(current)).seq(offset(current)));
+            if (newer && segment.type(offset) == PUT) {
+                index.put(key, location(segment.id, offset));
+                segment.live.addAndGet(size);
+                if (current != null) {
+                    release(current);
+                }
+            } else if (newer) {
+                deletedAt.put(key, seq);
+                index.remove(key);
+                if (current != null) {
+                    release(current);
+                }
+            }
+            offset += size;
+        }
+        segment.writePosition = offset;
+        if (!segment.isZero(offset)) {
+            log.warn("Log segment {} has a torn or corrupt record at {}, discarding the rest of the segment",
+                    segment.path, offset);
+            segment.zero(offset);
+        }
+    }
+
+    private long append(byte type, Key key, byte[] value) {
+        int size = HEADER_SIZE + value.length;
+        if (size > segmentSize) {
+            throw new IllegalArgumentException(String.format("Record of %d bytes doesn't fit a segment of %d bytes",
+                    size, segmentSize));
+        }
+        if (active.writePosition + size > segmentSize) {
+            roll();
+        }
+        int offset = active.writePosition;
+        active.addSeq(nextSeq);
+        active.write(offset, type, nextSeq++, key, value);
+        if (forceWrites) {
+            active.buffer.force(offset, size);
+        }
+        active.writePosition += size;
+        return location(active.id, offset);
+    }
+
+    private void roll() {
+        active.buffer.force();
+        try {
+            active = newSegment(SEGMENT_SUFFIX);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Can't add a segment to log %s", name), e);
+        }
+        segments.put(active.id, active);
+    }
+
+    private void release(long location) {
+        Segment segment = segments.get(segmentId(location));
+        if (segment != null) {
+            segment.live.addAndGet(-segment.recordSize(offset(location)));
+        }
+    }
+
+    private synchronized List<Segment> sealedSegments() {
+        return segments.values().stream()
+                .filter(segment -> segment != active)
+                .sorted(Comparator.comparingInt(segment -> segment.id))
+                .collect(Collectors.toList());
+    }
+
+    private static double garbageRatio(List<Segment> sealed) {
+        long written = 0;
+        long live = 0;
+        for (Segment segment : sealed) {
+            written += segment.writePosition;
+            live += segment.live.get();
+        }
+        return written == 0 ? 0 : (double) (written - live) / written;
+    }
+
+    private void merge(List<Segment> sealed) throws IOException {
+        List<Segment> outputs = new ArrayList<>();
+        List<Move> moves = new ArrayList<>();
+        Segment output = null;
+        long highest = highestKey;
+        long oldestOutside = oldestSeqOutside(sealed);
+        Map<Key, Long> tombstones = new HashMap<>();
+        for (Segment segment : sealed) {
+            int size;
+            for (int offset = 0; offset < segment.writePosition; offset += size) {
+                size = segment.recordSize(offset);
+                if (size == 0) {
+                    break;
+                }
+                Key key = segment.key(offset);
+                long location = location(segment.id, offset);
+                if (segment.type(offset) == DELETE) {
+                    long seq = segment.seq(offset);
+                    tombstones.merge(key, location, (kept, newer) -> seq > seqAt(kept) ? newer : kept);
+                    continue;
+                }
+                if (!Long.valueOf(location).equals(index.get(key))) {
+                    continue;
+                }
+                output = copy(segment, offset, size, output, outputs);
+                moves.add(new Move(key, location, location(output.id, output.writePosition - size), size));
+            }
+        }
+        Map.Entry<Key, Long> last = index.lastEntry();
+        boolean keepHighest = last == null || last.getKey().a < highest;
+        for (Map.Entry<Key, Long> tombstone : tombstones.entrySet()) {
+            long location = tombstone.getValue();
+            if (seqAt(location) > oldestOutside || (keepHighest && tombstone.getKey().a == highest)) {
+                Segment segment = segments.get(segmentId(location));
+                int size = segment.recordSize(offset(location));
+                output = copy(segment, offset(location), size, output, outputs);
+                output.live.addAndGet(size);
+            }
+        }
+        if (output != null) {
+            output.buffer.force();
+        }
+        Path manifest = directory.resolve(name + MANIFEST_SUFFIX);
+        writeManifest(manifest, outputs, sealed);
+        for (Segment merged : outputs) {
+            merged.path = Files.move(merged.path, segmentPath(merged.id, SEGMENT_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+            segments.put(merged.id, merged);
+        }
+        for (Move move : moves) {
+            Segment target = segments.get(segmentId(move.to));
+            target.live.addAndGet(move.size);
+            if (!index.replace(move.key, move.from, move.to)) {
+                target.live.addAndGet(-move.size);
+            }
+        }
+        for (Segment segment : sealed) {
+            segments.remove(segment.id);
+            segment.close();
+            Files.delete(segment.path);
+        }
+        Files.delete(manifest);
+    }
+
+    /**
+     * Sequence number of the oldest record in the segments that aren't merged, Long.MAX_VALUE if
+     * they hold none. A tombstone newer than that may still hide a record in one of them.
+     */
+    private long oldestSeqOutside(List<Segment> merged) {
+        return segments.values().stream()
+                .filter(segment -> !merged.contains(segment))
+                .mapToLong(segment -> segment.minSeq)
+                .min()
+                .orElse(Long.MAX_VALUE);
+    }
+
+    private long seqAt(long location) {
+        return segments.get(segmentId(location)).seq(offset(location));
+    }
+
+    /**
+     * Appends the record to the output segment, starting a new one when it doesn't fit.
+     */
+    private Segment copy(Segment from, int offset, int size, Segment output, List<Segment> outputs) throws IOException {
+        if (output == null || output.writePosition + size > segmentSize) {
+            if (output != null) {
+                output.buffer.force();
+            }
+            output = newSegment(MERGING_SUFFIX);
+            outputs.add(output);
+        }
+        output.buffer.put(output.writePosition, from.buffer, offset, size);
+        output.addSeq(from.seq(offset));
+        output.writePosition += size;
+        return output;
+    }
+
+    private void writeManifest(Path manifest, List<Segment> outputs, List<Segment> merged) throws IOException {
+        String content = ids(outputs) + "\n" + ids(merged) + "\n";
+        Path temp = directory.resolve(name + MANIFEST_SUFFIX + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(content.getBytes(StandardCharsets.US_ASCII)));
+            channel.force(true);
+        }
+        Files.move(temp, manifest, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Finishes a compaction that committed its manifest but crashed before swapping the segments.
+     */
+    private void finishMerge() throws IOException {
+        Path manifest = directory.resolve(name + MANIFEST_SUFFIX);
+        if (!Files.exists(manifest)) {
+            Files.deleteIfExists(directory.resolve(name + MANIFEST_SUFFIX + ".tmp"));
+            return;
+        }
+        List<String> lines = Files.readAllLines(manifest, StandardCharsets.US_ASCII);
+        for (int id : parseIds(lines.get(0))) {
+            Path merging = segmentPath(id, MERGING_SUFFIX);
+            if (Files.exists(merging)) {
+                Files.move(merging, segmentPath(id, SEGMENT_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        for (int id : parseIds(lines.get(1))) {
+            Files.deleteIfExists(segmentPath(id, SEGMENT_SUFFIX));
+        }
+        Files.delete(manifest);
+        log.warn("Log {}: finished the compaction interrupted by the last shutdown", name);
+    }
+
+    private static String ids(List<Segment> segments) {
+        return segments.stream().map(segment -> String.valueOf(segment.id)).collect(Collectors.joining(" "));
+    }
+
+    private static int[] parseIds(String line) {
+        return line.isBlank() ? new int[0] : Arrays.stream(line.trim().split(" ")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private Segment newSegment(String suffix) throws IOException {
+        int id = nextSegmentId.getAndIncrement();
+        return new Segment(id, segmentPath(id, suffix));
+    }
+
+    private Path segmentPath(int id, String suffix) {
+        return directory.resolve(String.format("%s-%08d%s", name, id, suffix));
+    }
+
+    private static long location(int segmentId, int offset) {
+        return (long) segmentId << 32 | offset;
+    }
+
+    private static int segmentId(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offset(long location) {
+        return (int) location;
+    }
+
+    private final class Segment {
+        private final int id;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final AtomicLong live = new AtomicLong();
+        private Path path;
+        private int writePosition;
+        private volatile long minSeq = Long.MAX_VALUE;
+        private long maxSeq;
+
+        private Segment(int id, Path path) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+
+        private void addSeq(long seq) {
+            minSeq = Math.min(minSeq, seq);
+            maxSeq = Math.max(maxSeq, seq);
+        }
+
+        private void write(int offset, byte type, long seq, Key key, byte[] value) {
+            buffer.putInt(offset, value.length);
+            buffer.put(offset + TYPE_OFFSET, type);
+            buffer.putLong(offset + SEQ_OFFSET, seq);
+            buffer.putLong(offset + KEY_OFFSET, key.a);
+            buffer.putLong(offset + KEY_OFFSET + 8, key.b);
+            buffer.put(offset + HEADER_SIZE, value);
+            buffer.putInt(offset + 4, checksum(offset, value.length));
+        }
+
+        /**
+         * Size of the valid record at the offset, or 0 if there is none: the end of the written
+         * part, a torn write or a corrupt record.
+         */
+        private int recordSize(int offset) {
+            if (offset > segmentSize - HEADER_SIZE) {
+                return 0;
+            }
+            int length = buffer.getInt(offset);
+            byte type = buffer.get(offset + TYPE_OFFSET);
+            if ((type != PUT && type != DELETE) || length < 0 || length > segmentSize - HEADER_SIZE - offset) {
+                return 0;
+            }
+            return buffer.getInt(offset + 4) == checksum(offset, length) ? HEADER_SIZE + length : 0;
+        }
+
+        private int checksum(int offset, int length) {
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(offset + TYPE_OFFSET, HEADER_SIZE - TYPE_OFFSET + length));
+            return (int) crc.getValue();
+        }
+
+        private byte type(int offset) {
+            return buffer.get(offset + TYPE_OFFSET);
+        }
+
+        private long seq(int offset) {
+            return buffer.getLong(offset + SEQ_OFFSET);
+        }
+
+        private Key key(int offset) {
+            return new Key(buffer.getLong(offset + KEY_OFFSET), buffer.getLong(offset + KEY_OFFSET + 8));
+        }
+
+        private byte[] value(int offset) {
+            byte[] value = new byte[buffer.getInt(offset)];
+            buffer.get(offset + HEADER_SIZE, value);
+            return value;
+        }
+
+        private boolean isZero(int from) {
+            int i = from;
+            for (; i <= segmentSize - Long.BYTES; i += Long.BYTES) {
+                if (buffer.getLong(i) != 0) {
+                    return false;
+                }
+            }
+            for (; i < segmentSize; i++) {
+                if (buffer.get(i) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void zero(int from) {
+            byte[] zeros = new byte[Math.min(segmentSize - from, 1 << 16)];
+            for (int i = from; i < segmentSize; i += zeros.length) {
+                buffer.put(i, zeros, 0, Math.min(zeros.length, segmentSize - i));
+            }
+            buffer.force();
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Can't close log segment {}", path, e);
+            }
+        }
+    }
+
+    private static final class Key implements Comparable<Key> {
+        private final long a;
+        private final long b;
+
+        private Key(long a, long b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int byA = Long.compare(a, other.a);
+            return byA != 0 ? byA : Long.compare(b, other.b);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && ((Key) other).a == a && ((Key) other).b == b;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(a) * 31 + Long.hashCode(b);
+        }
+    }
+
+    private static final class Move {
+        private final Key key;
+        private final long from;
+        private final long to;
+        private final int size;
+
+        private Move(Key key, long from, long to, int size) {
+            this.key = key;
+            this.from = from;
+            this.to = to;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Set of ids kept as a sorted long[] adjacency array: 8 bytes per id instead of a boxed
+ * Long plus a hash node. All operations lock the set itself, so every film or user owns
+ * its own lock. The {@link java.util.Set} view boxes ids only when it is iterated, and
+ * iterates over a snapshot taken at the time the iterator was created.
+ */
+public class LongSortedSet extends AbstractSet<Long> {
+
+    private static final long[] EMPTY = new long[0];
+    private static final int MIN_CAPACITY = 4;
+    private static final int GALLOP_RATIO = 16;
+
+    private long[] ids = EMPTY;
+    private int size;
+
+    public LongSortedSet() {
+    }
+
+    public LongSortedSet(Collection<Long> initial) {
+        if (initial != null) {
+            for (Long id : initial) {
+                add(id.longValue());
+            }
+        }
+    }
+
+    public synchronized boolean add(long id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0) {
+            return false;
+        }
+        int insertAt = -index - 1;
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(MIN_CAPACITY, size + (size >> 1)));
+        }
+        System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+        ids[insertAt] = id;
+        size++;
+        return true;
+    }
+
+    public synchronized boolean remove(long id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+        if (ids.length > MIN_CAPACITY && size < ids.length >> 2) {
+            ids = Arrays.copyOf(ids, Math.max(MIN_CAPACITY, size << 1));
+        }
+        return true;
+    }
+
+    public synchronized boolean contains(long id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    /**
+     * Returns a sorted copy of the ids.
+     */
+    public synchronized long[] toLongArray() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * Sorted ids of any id set, without boxing when it is a LongSortedSet.
+     */
+    public static long[] toLongArray(Set<Long> ids) {
+        if (ids == null) {
+            return EMPTY;
+        }
+        if (ids instanceof LongSortedSet) {
+            return ((LongSortedSet) ids).toLongArray();
+        }
+        return ids.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    /**
+     * Set over ids that are already sorted and distinct, taking ownership of the array.
+     */
+    static LongSortedSet ofSorted(long[] ids) {
+        LongSortedSet set = new LongSortedSet();
+        set.ids = ids;
+        set.size = ids.length;
+        return set;
+    }
+
+    /**
+     * Intersection of two sorted arrays: a linear merge for arrays of similar length, a galloping
+     * search of the longer array when one is more than {@value #GALLOP_RATIO} times shorter.
+     */
+    public static long[] intersect(long[] a, long[] b) {
+        if (a.length > b.length) {
+            long[] swap = a;
+            a = b;
+            b = swap;
+        }
+        long[] result = new long[a.length];
+        int count = 0;
+        if ((long) a.length * GALLOP_RATIO < b.length) {
+            int from = 0;
+            for (long id : a) {
+                int bound = 1;
+                while (from + bound < b.length && b[from + bound] < id) {
+                    bound <<= 1;
+                }
+                int index = Arrays.binarySearch(b, from, Math.min(from + bound + 1, b.length), id);
+                if (index >= 0) {
+                    result[count++] = id;
+                    from = index + 1;
+                } else {
+                    from = -index - 1;
+                }
+                if (from >= b.length) {
+                    break;
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    result[count++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(Long id) {
+        return add(id.longValue());
+    }
+
+    @Override
+    public boolean remove(Object id) {
+        return id instanceof Long && remove(((Long) id).longValue());
+    }
+
+    @Override
+    public boolean contains(Object id) {
+        return id instanceof Long && contains(((Long) id).longValue());
+    }
+
+    @Override
+    public synchronized void clear() {
+        ids = EMPTY;
+        size = 0;
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        long[] snapshot = toLongArray();
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < snapshot.length;
+            }
+
+            @Override
+            public Long next() {
+                if (next >= snapshot.length) {
+                    throw new NoSuchElementException();
+                }
+                return snapshot[next++];
+            }
+        };
+    }
+}
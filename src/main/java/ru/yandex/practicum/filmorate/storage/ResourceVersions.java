@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versions of the HTTP resources, used as strong ETags. Every film write takes the next value of
+ * a global counter as the new version of the film, so the counter itself versions film lists.
+ * Genres and MPA ratings share one version, bumped by ReferenceDataCache whenever it (re)loads them.
+ * All versions are prefixed with the startup time, so tags from an earlier run never match.
+ * <p>
+ * Callers must read the tag before they read the resource: a write that commits in between then
+ * only makes the tag stale, never the cached body.
+ */
+@Component
+public class ResourceVersions {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final AtomicLong filmsVersion = new AtomicLong();
+    private final Map<Long, Long> filmVersions = new ConcurrentHashMap<>();
+    private final AtomicLong referenceDataVersion = new AtomicLong();
+
+    /**
+     * Bumps the version of a film and of the film lists once the surrounding transaction commits.
+     */
+    public void filmChanged(long filmId) {
+        AfterCommit.run(() -> filmVersions.put(filmId, filmsVersion.incrementAndGet()));
+    }
+
+    public void filmsChanged(Collection<Long> filmIds) {
+        AfterCommit.run(() -> filmIds.forEach(filmId -> filmVersions.put(filmId, filmsVersion.incrementAndGet())));
+    }
+
+    /**
+     * Bumps the version of the film lists only, for writes that reorder films without changing them.
+     */
+    public void filmsReordered() {
+        AfterCommit.run(filmsVersion::incrementAndGet);
+    }
+
+    /**
+     * Bumps the version of genres and MPA ratings. Called after the new values are visible to readers.
+     */
+    public void referenceDataChanged() {
+        referenceDataVersion.incrementAndGet();
+    }
+
+    public String filmTag(long filmId) {
+        return "\"film-" + filmId + "-" + epoch + "-" + filmVersions.getOrDefault(filmId, 0L) + "\"";
+    }
+
+    public String filmsTag() {
+        return "\"films-" + epoch + "-" + filmsVersion.get() + "\"";
+    }
+
+    public String referenceDataTag() {
+        return "\"reference-" + epoch + "-" + referenceDataVersion.get() + "\"";
+    }
+}
@@ -0,0 +1,229 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.LogStore;
+import ru.yandex.practicum.filmorate.storage.LongSortedSet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * FilmStorage on the append-only film and film like logs of {@link LogStore}, so films and likes
+ * survive restarts. Films are keyed by id, likes are film id - user id edges. Like
+ * InMemoryFilmStorage, films keep the MPA rating and genres they were posted with.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.file.enabled", havingValue = "true")
+public class FileFilmStorage implements FilmStorage {
+
+    private static final LocalDate MOVIE_BIRTHDAY = LocalDate.of(1895, 12, 28);
+
+    private final LogStore films;
+    private final LogStore likes;
+    private final AtomicLong filmId;
+
+    @Autowired
+    public FileFilmStorage(@Qualifier("filmLog") LogStore films, @Qualifier("filmLikeLog") LogStore likes) {
+        this.films = films;
+        this.likes = likes;
+        this.filmId = new AtomicLong(films.highestKey() + 1);
+    }
+
+    @Override
+    public synchronized Film createFilm(Film film) throws ValidationException {
+        if (validate(film)) {
+            film.setId(filmId.getAndIncrement());
+            films.put(film.getId(), 0, encode(film));
+            if (film.getLikes() != null) {
+                film.getLikes().forEach(userId -> likes.put(film.getId(), userId, new byte[0]));
+            }
+            film.setLikes(likesOf(film.getId()));
+        }
+        log.info("Film was created with id {}", film.getId());
+        return film;
+    }
+
+    @Override
+    public synchronized Film updateFilm(Film film) throws ValidationException {
+        if (validate(film)) {
+            if (film.getId() != 0 && films.contains(film.getId(), 0)) {
+                films.put(film.getId(), 0, encode(film));
+                film.setLikes(likesOf(film.getId()));
+                log.info("Film with id {} was updated", film.getId());
+            } else if (film.getId() == 0) {
+                return createFilm(film);
+            } else {
+                throw new FilmNotFoundException(String.format("Film with id %d not found", film.getId()));
+            }
+        }
+        return film;
+    }
+
+    @Override
+    public List<Film> getFilms() {
+        return films.values().stream().map(this::decode).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> getFilms(long after, int limit) {
+        return films.values(after, limit).stream().map(this::decode).collect(Collectors.toList());
+    }
+
+    @Override
+    public Film findFilmById(long id) {
+        byte[] film = films.get(id, 0);
+        if (film == null) {
+            log.debug("Incorrect id");
+            throw new FilmNotFoundException(String.format("Film with id %d not found", id));
+        }
+        return decode(film);
+    }
+
+    @Override
+    public List<Film> findFilmsByIds(long[] ids) {
+        List<Film> found = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            byte[] film = films.get(id, 0);
+            if (film != null) {
+                found.add(decode(film));
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public synchronized void deleteFilm(long id) {
+        if (films.remove(id, 0)) {
+            likes.removeAll(id);
+        }
+    }
+
+    public synchronized boolean addLike(long id, long userId) {
+        if (!films.contains(id, 0)) {
+            throw new FilmNotFoundException(String.format("Film with id %d not found", id));
+        }
+        boolean added = !likes.contains(id, userId);
+        likes.put(id, userId, new byte[0]);
+        return added;
+    }
+
+    public boolean deleteLike(long id, long userId) {
+        return likes.remove(id, userId);
+    }
+
+    /**
+     * Sorted ids of the users who liked the film.
+     */
+    public long[] getLikes(long id) {
+        return likes.keys(id);
+    }
+
+    private LongSortedSet likesOf(long id) {
+        LongSortedSet filmLikes = new LongSortedSet();
+        for (long userId : likes.keys(id)) {
+            filmLikes.add(userId);
+        }
+        return filmLikes;
+    }
+
+    private static byte[] encode(Film film) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(film.getId());
+            out.writeInt(film.getRate());
+            out.writeBoolean(film.getMpa() != null);
+            if (film.getMpa() != null) {
+                out.writeInt(film.getMpa().getId());
+                writeNullable(out, film.getMpa().getName());
+            }
+            out.writeInt(film.getGenres() == null ? -1 : film.getGenres().size());
+            if (film.getGenres() != null) {
+                for (Genre genre : film.getGenres()) {
+                    out.writeInt(genre.getId());
+                    writeNullable(out, genre.getName());
+                }
+            }
+            out.writeUTF(film.getName());
+            out.writeUTF(film.getDescription());
+            out.writeLong(film.getReleaseDate().toEpochDay());
+            out.writeLong(film.getDuration());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Film decode(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            long id = in.readLong();
+            int rate = in.readInt();
+            Mpa mpa = in.readBoolean() ? Mpa.builder().id(in.readInt()).name(readNullable(in)).build() : null;
+            int genreCount = in.readInt();
+            LinkedHashSet<Genre> genres = genreCount < 0 ? null : new LinkedHashSet<>();
+            for (int i = 0; i < genreCount; i++) {
+                genres.add(Genre.builder().id(in.readInt()).name(readNullable(in)).build());
+            }
+            return Film.builder()
+                    .id(id)
+                    .rate(rate)
+                    .mpa(mpa)
+                    .genres(genres)
+                    .name(in.readUTF())
+                    .description(in.readUTF())
+                    .releaseDate(LocalDate.ofEpochDay(in.readLong()))
+                    .duration(in.readLong())
+                    .likes(likesOf(id))
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private boolean validate(Film film) throws ValidationException {
+        if (film.getName().isBlank()) {
+            log.debug("Incorrect film name");
+            throw new ValidationException("name");
+        } else if (film.getDescription().length() > 200) {
+            log.debug("Description is too long");
+            throw new ValidationException("description. Description is too long");
+        } else if (film.getReleaseDate().isBefore(MOVIE_BIRTHDAY)) {
+            log.debug("date");
+            throw new ValidationException("release date");
+        } else if (film.getDuration() <= 0) {
+            log.debug("Incorrect duration");
+            throw new ValidationException("duration");
+        }
+        return true;
+    }
+}
@@ -2,47 +2,82 @@ package ru.yandex.practicum.filmorate.storage.film;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.ConflictException;
 import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.mapRow.FilmAssembler;
 import ru.yandex.practicum.filmorate.mapRow.RowTo;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.ResourceVersions;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.time.LocalDate;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component
 public class FilmDbStorage implements FilmStorage {
 
     private final JdbcTemplate jdbcTemplate;
+    private final FilmAssembler filmAssembler;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final FilmSearchIndex filmSearchIndex;
+    private final ResourceVersions resourceVersions;
     private static final LocalDate MOVIE_BIRTHDAY = LocalDate.of(1895, 12, 28);
     private static final String QUERY_CREATE_FILM = "INSERT INTO films" +
             " (film_name, description, rate, release_date, duration, mpa_rating_id)" +
             " VALUES (?, ?, ?, ?, ?, ?)";
-    private static final String QUERY_UPDATE_FILM = "UPDATE films" +
+    private static final String QUERY_UPDATE_FILM = "SELECT version FROM FINAL TABLE (UPDATE films" +
             " SET film_name = ?, description = ?, rate = ?," +
-            " release_date = ?, duration = ?, mpa_rating_id = ?" +
-            " WHERE film_id = ?";
+            " release_date = ?, duration = ?, mpa_rating_id = ?, version = version + 1" +
+            " WHERE film_id = ?)";
+    private static final String QUERY_UPDATE_FILM_IF_VERSION = "SELECT version FROM FINAL TABLE (UPDATE films" +
+            " SET film_name = ?, description = ?, rate = ?," +
+            " release_date = ?, duration = ?, mpa_rating_id = ?, version = version + 1" +
+            " WHERE film_id = ? AND version = ?)";
+    private static final String QUERY_GET_FILM_VERSION = "SELECT version FROM films WHERE film_id = ?";
     private static final String QUERY_GET_ALL_FILMS = "SELECT * FROM films";
+    private static final String QUERY_GET_FILMS_PAGE = "SELECT * FROM films WHERE film_id > ? " +
+            "ORDER BY film_id LIMIT ?";
     private static final String QUERY_GET_FILM_BY_ID = "SELECT * FROM films WHERE film_id = ?";
+    private static final String QUERY_GET_FILMS_BY_IDS = "SELECT f.* " +
+            "FROM UNNEST(CAST(? AS BIGINT ARRAY)) AS ids(film_id) " +
+            "JOIN films AS f ON f.film_id = ids.film_id";
     private static final String QUERY_DELETE_FILM = "DELETE FROM films WHERE film_id = ?";
-    private static final String QUERY_DELETE_GENRE_FROM_FILM = "DELETE FROM film_genres WHERE film_id = ?";
+    private static final String QUERY_GET_FILM_GENRE_IDS = "SELECT genre_id FROM film_genres WHERE film_id = ?";
+    private static final String QUERY_DELETE_GENRE_FROM_FILM = "DELETE FROM film_genres WHERE film_id = ? " +
+            "AND genre_id = ?";
     private static final String QUERY_SET_GENRE_TO_FILM = "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)";
 
     @Autowired
-    public FilmDbStorage(JdbcTemplate jdbcTemplate) {
+    public FilmDbStorage(JdbcTemplate jdbcTemplate, FilmAssembler filmAssembler, PopularFilmsIndex popularFilmsIndex,
+                         FilmSearchIndex filmSearchIndex, ResourceVersions resourceVersions) {
         this.jdbcTemplate = jdbcTemplate;
+        this.filmAssembler = filmAssembler;
+        this.popularFilmsIndex = popularFilmsIndex;
+        this.filmSearchIndex = filmSearchIndex;
+        this.resourceVersions = resourceVersions;
     }
 
     @Override
+    @Transactional
     public Film createFilm(Film film) throws ValidationException {
         KeyHolder keyHolder = new GeneratedKeyHolder();
         if (validate(film)) {
@@ -57,68 +92,194 @@ public class FilmDbStorage implements FilmStorage {
                 return stmt;
             }, keyHolder);
         }
-        if(film.getGenres() != null && !film.getGenres().isEmpty()) {
-            film.getGenres().stream().sorted(Comparator.comparingInt(Genre::getId));
-        }
         film.setId(keyHolder.getKey().longValue());
+        film.setVersion(0L);
         log.info("Film was created with id {}", film.getId());
-        setFilmGenresValues(film);
+        setFilmGenresValues(film, Set.of());
+        indexFilm(film);
         return film;
     }
 
     @Override
+    @Transactional
     public Film updateFilm(Film film) throws ValidationException {
         if(validate(film)) {
-            jdbcTemplate.update(QUERY_UPDATE_FILM,
-                    film.getName(),
-                    film.getDescription(),
-                    film.getRate(),
-                    film.getReleaseDate(),
-                    film.getDuration(),
-                    film.getMpa().getId(),
-                    film.getId());
-            if(film.getGenres() != null && !film.getGenres().isEmpty()) {
-                film.getGenres().stream().sorted(Comparator.comparingInt(Genre::getId));
+            List<Long> versions = film.getVersion() == null
+                    ? jdbcTemplate.queryForList(QUERY_UPDATE_FILM, Long.class,
+                    film.getName(), film.getDescription(), film.getRate(), film.getReleaseDate(),
+                    film.getDuration(), film.getMpa().getId(), film.getId())
+                    : jdbcTemplate.queryForList(QUERY_UPDATE_FILM_IF_VERSION, Long.class,
+                    film.getName(), film.getDescription(), film.getRate(), film.getReleaseDate(),
+                    film.getDuration(), film.getMpa().getId(), film.getId(), film.getVersion());
+            if (!versions.isEmpty()) {
+                film.setVersion(versions.get(0));
+            } else if (film.getVersion() == null) {
+                throw new FilmNotFoundException(String.format("Film with id %d not found", film.getId()));
+            } else {
+                List<Long> current = jdbcTemplate.queryForList(QUERY_GET_FILM_VERSION, Long.class, film.getId());
+                if (current.isEmpty()) {
+                    throw new FilmNotFoundException(String.format("Film with id %d not found", film.getId()));
+                }
+                throw new ConflictException(String.format("Film with id %d was updated concurrently: " +
+                        "version %d expected, current version is %d", film.getId(), film.getVersion(), current.get(0)));
+            }
+            if (film.getGenres() != null) {
+                setFilmGenresValues(film, new HashSet<>(
+                        jdbcTemplate.queryForList(QUERY_GET_FILM_GENRE_IDS, Integer.class, film.getId())));
             }
-            setFilmGenresValues(film);
+            indexFilm(film);
             log.info("Film with id {} was updated", film.getId());
         }
         return film;
     }
 
+    /**
+     * Inserts already validated films with one JDBC batch and their genres with another,
+     * setting the generated ids on the given objects.
+     */
+    public List<Film> createFilms(List<Film> films) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            try (PreparedStatement stmt = con.prepareStatement(QUERY_CREATE_FILM, new String[]{("film_id")})) {
+                for (Film film : films) {
+                    stmt.setString(1, film.getName());
+                    stmt.setString(2, film.getDescription());
+                    stmt.setInt(3, film.getRate());
+                    stmt.setDate(4, Date.valueOf(film.getReleaseDate()));
+                    stmt.setLong(5, film.getDuration());
+                    stmt.setInt(6, film.getMpa().getId());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    for (Film film : films) {
+                        if (!keys.next()) {
+                            throw new SQLException("Missing generated key for batch insert into films");
+                        }
+                        film.setId(keys.getLong(1));
+                        film.setVersion(0L);
+                    }
+                }
+            }
+            return null;
+        });
+        List<Object[]> genres = new ArrayList<>();
+        for (Film film : films) {
+            if (film.getGenres() != null) {
+                Set<Integer> genreIds = new LinkedHashSet<>();
+                for (Genre genre : film.getGenres()) {
+                    if (genreIds.add(genre.getId())) {
+                        genres.add(new Object[]{film.getId(), genre.getId()});
+                    }
+                }
+            }
+        }
+        if (!genres.isEmpty()) {
+            jdbcTemplate.batchUpdate(QUERY_SET_GENRE_TO_FILM, genres);
+        }
+        films.forEach(this::indexFilm);
+        log.info("{} films were created", films.size());
+        return films;
+    }
+
     @Override
     public List<Film> getFilms() {
-        return jdbcTemplate.query(QUERY_GET_ALL_FILMS, RowTo::mapRowToFilm);
+        return filmAssembler.assemble(jdbcTemplate.query(QUERY_GET_ALL_FILMS, RowTo::mapRowToFilm));
+    }
+
+    @Override
+    public List<Film> getFilms(long after, int limit) {
+        return filmAssembler.assemble(jdbcTemplate.query(QUERY_GET_FILMS_PAGE, RowTo::mapRowToFilm, after, limit));
     }
 
     @Override
     public Film findFilmById(long id) {
         if (id > 0) {
-            return jdbcTemplate.queryForObject(QUERY_GET_FILM_BY_ID, RowTo::mapRowToFilm, id);
+            List<Film> films = jdbcTemplate.query(QUERY_GET_FILM_BY_ID, RowTo::mapRowToFilm, id);
+            if (!films.isEmpty()) {
+                return filmAssembler.assemble(films.get(0));
+            }
         }
         log.debug("Incorrect id");
         throw new FilmNotFoundException(String.format("Film with id %d not found", id));
     }
 
+    @Override
+    public List<Film> findFilmsByIds(long[] ids) {
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+        Long[] boxedIds = new Long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            boxedIds[i] = ids[i];
+        }
+        Map<Long, Film> filmsById = new HashMap<>();
+        for (Film film : jdbcTemplate.query(QUERY_GET_FILMS_BY_IDS, RowTo::mapRowToFilm, (Object) boxedIds)) {
+            filmsById.put(film.getId(), film);
+        }
+        List<Film> films = new ArrayList<>(filmsById.size());
+        for (long id : ids) {
+            Film film = filmsById.get(id);
+            if (film != null) {
+                films.add(film);
+            }
+        }
+        return filmAssembler.assemble(films);
+    }
+
     @Override
     public void deleteFilm(long id) {
-        jdbcTemplate.update(QUERY_DELETE_FILM, id);
+        if (jdbcTemplate.update(QUERY_DELETE_FILM, id) > 0) {
+            popularFilmsIndex.removeFilm(id);
+            filmSearchIndex.removeFilm(id);
+            resourceVersions.filmChanged(id);
+        }
     }
 
-    private void setFilmGenresValues(Film film) {
-        if (film.getGenres() != null) {
-            if (film.getGenres().isEmpty()) {
-                jdbcTemplate.update(QUERY_DELETE_GENRE_FROM_FILM, film.getId());
-            } else {
-                jdbcTemplate.update(QUERY_DELETE_GENRE_FROM_FILM, film.getId());
-                for (Genre genre : film.getGenres()) {
-                    jdbcTemplate.update(QUERY_SET_GENRE_TO_FILM, film.getId(), genre.getId());
-                }
+    /**
+     * Puts the film into the popular films and search indexes and bumps its version. A film without
+     * a genres list keeps its indexed genres.
+     */
+    private void indexFilm(Film film) {
+        Set<Integer> genreIds = film.getGenres() == null ? null
+                : film.getGenres().stream().map(Genre::getId).collect(Collectors.toSet());
+        popularFilmsIndex.putFilm(film.getId(), film.getMpa().getId(), genreIds, film.getReleaseDate().getYear());
+        filmSearchIndex.putFilm(film.getId(), film.getName(), film.getDescription());
+        resourceVersions.filmChanged(film.getId());
+    }
+
+    /**
+     * Brings film_genres in line with film.getGenres() by deleting and inserting only the
+     * genre ids that differ from currentGenreIds, each as one JDBC batch.
+     */
+    private void setFilmGenresValues(Film film, Set<Integer> currentGenreIds) {
+        if (film.getGenres() == null) {
+            return;
+        }
+        Set<Integer> genreIds = new LinkedHashSet<>();
+        for (Genre genre : film.getGenres()) {
+            genreIds.add(genre.getId());
+        }
+        List<Object[]> toDelete = new ArrayList<>();
+        for (Integer genreId : currentGenreIds) {
+            if (!genreIds.contains(genreId)) {
+                toDelete.add(new Object[]{film.getId(), genreId});
             }
         }
+        List<Object[]> toInsert = new ArrayList<>();
+        for (Integer genreId : genreIds) {
+            if (!currentGenreIds.contains(genreId)) {
+                toInsert.add(new Object[]{film.getId(), genreId});
+            }
+        }
+        if (!toDelete.isEmpty()) {
+            jdbcTemplate.batchUpdate(QUERY_DELETE_GENRE_FROM_FILM, toDelete);
+        }
+        if (!toInsert.isEmpty()) {
+            jdbcTemplate.batchUpdate(QUERY_SET_GENRE_TO_FILM, toInsert);
+        }
     }
 
-    private boolean validate(Film film) throws ValidationException {
+    public boolean validate(Film film) throws ValidationException {
         if (film.getName().isBlank()) {
             log.debug("Incorrect film name");
             throw new ValidationException("name");
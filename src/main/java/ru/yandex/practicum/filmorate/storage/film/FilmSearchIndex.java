@@ -0,0 +1,406 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.AfterCommit;
+import ru.yandex.practicum.filmorate.storage.LongSortedSet;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Inverted index over film names and descriptions. Text is split into runs of letters and
+ * digits, lower-cased and with ё folded into е, so Cyrillic and Latin words are matched alike.
+ * Every term maps to the sorted ids of the films that have it in the name and in the description.
+ * <p>
+ * A film matches a query when it has every query word. The last word also matches as a prefix,
+ * so results follow the user's typing. Each word scores its idf, doubled for a name match and halved
+ * for a prefix match; the sum is raised by the film's likes, see {@link #LIKES_WEIGHT}.
+ * <p>
+ * Loaded at startup and updated by film writes once their transaction commits.
+ */
+@Slf4j
+@Component
+public class FilmSearchIndex {
+
+    private static final String QUERY_GET_FILM_TEXTS = "SELECT film_id, film_name, description FROM films";
+    private static final double NAME_WEIGHT = 2;
+    private static final double PREFIX_WEIGHT = 0.5;
+    /**
+     * Text score is multiplied by 1 + LIKES_WEIGHT * ln(1 + likes): 100 likes add about 2.3 times
+     * the text score, so a much better text match still wins over a popular film.
+     */
+    private static final double LIKES_WEIGHT = 0.5;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MAX_PREFIX_TERMS = 64;
+    /**
+     * Rough cost of one lookup in a postings list against one lookup in the candidate table.
+     */
+    private static final int PROBE_COST = 8;
+    private static final String[] NO_TERMS = new String[0];
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final ConcurrentNavigableMap<String, Postings> terms = new ConcurrentSkipListMap<>();
+    private final Map<Long, FilmTerms> films = new ConcurrentHashMap<>();
+
+    @Autowired
+    public FilmSearchIndex(JdbcTemplate jdbcTemplate, PopularFilmsIndex popularFilmsIndex) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.popularFilmsIndex = popularFilmsIndex;
+    }
+
+    @PostConstruct
+    public synchronized void load() {
+        terms.clear();
+        films.clear();
+        jdbcTemplate.query(QUERY_GET_FILM_TEXTS, resultSet -> {
+            index(resultSet.getLong("film_id"), resultSet.getString("film_name"), resultSet.getString("description"));
+        });
+        log.info("Search index loaded for {} films and {} terms", films.size(), terms.size());
+    }
+
+    public void putFilm(long filmId, String name, String description) {
+        AfterCommit.run(() -> index(filmId, name, description));
+    }
+
+    public void removeFilm(long filmId) {
+        AfterCommit.run(() -> unindex(filmId));
+    }
+
+    /**
+     * Ids of the films matching the query, best match first; ties go to the lower id.
+     */
+    public long[] search(String query, int limit) {
+        List<String> words = new ArrayList<>(tokenize(query));
+        if (words.isEmpty()) {
+            return new long[0];
+        }
+        List<List<Match>> wordMatches = new ArrayList<>(words.size());
+        for (int i = 0; i < words.size(); i++) {
+            List<Match> matches = matches(words.get(i), i == words.size() - 1);
+            if (matches.isEmpty()) {
+                return new long[0];
+            }
+            wordMatches.add(matches);
+        }
+        wordMatches.sort(Comparator.comparingLong(FilmSearchIndex::cost));
+        Scored candidates = scored(wordMatches.get(0));
+        for (int i = 1; i < wordMatches.size() && candidates.size > 0; i++) {
+            candidates = retain(candidates, wordMatches.get(i));
+        }
+        return top(candidates, limit);
+    }
+
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT).replace('ё', 'е'));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private synchronized void index(long filmId, String name, String description) {
+        unindex(filmId);
+        FilmTerms filmTerms = new FilmTerms(tokenize(name).toArray(NO_TERMS), tokenize(description).toArray(NO_TERMS));
+        for (int i = 0; i < filmTerms.name.length; i++) {
+            Postings postings = terms.computeIfAbsent(filmTerms.name[i], Postings::new);
+            postings.name.add(filmId);
+            filmTerms.name[i] = postings.term;
+        }
+        for (int i = 0; i < filmTerms.description.length; i++) {
+            Postings postings = terms.computeIfAbsent(filmTerms.description[i], Postings::new);
+            postings.description.add(filmId);
+            filmTerms.description[i] = postings.term;
+        }
+        films.put(filmId, filmTerms);
+    }
+
+    private synchronized void unindex(long filmId) {
+        FilmTerms filmTerms = films.remove(filmId);
+        if (filmTerms == null) {
+            return;
+        }
+        for (String term : filmTerms.name) {
+            Postings postings = terms.get(term);
+            if (postings != null) {
+                postings.name.remove(filmId);
+                removeIfEmpty(term, postings);
+            }
+        }
+        for (String term : filmTerms.description) {
+            Postings postings = terms.get(term);
+            if (postings != null) {
+                postings.description.remove(filmId);
+                removeIfEmpty(term, postings);
+            }
+        }
+    }
+
+    private void removeIfEmpty(String term, Postings postings) {
+        if (postings.name.isEmpty() && postings.description.isEmpty()) {
+            terms.remove(term, postings);
+        }
+    }
+
+    /**
+     * Terms a query word matches: the word itself and, for the last word, up to
+     * {@link #MAX_PREFIX_TERMS} longer terms starting with it.
+     */
+    private List<Match> matches(String word, boolean prefix) {
+        List<Match> matches = new ArrayList<>();
+        double filmCount = Math.max(films.size(), 1);
+        Postings exact = terms.get(word);
+        if (exact != null) {
+            matches.add(new Match(exact, Math.log(1 + filmCount / exact.size())));
+        }
+        if (prefix && word.length() >= MIN_PREFIX_LENGTH) {
+            int expanded = 0;
+            for (Map.Entry<String, Postings> entry : terms.tailMap(word, false).entrySet()) {
+                if (!entry.getKey().startsWith(word) || expanded++ == MAX_PREFIX_TERMS) {
+                    break;
+                }
+                Postings postings = entry.getValue();
+                matches.add(new Match(postings, PREFIX_WEIGHT * Math.log(1 + filmCount / postings.size())));
+            }
+        }
+        return matches;
+    }
+
+    private static long cost(List<Match> matches) {
+        long cost = 0;
+        for (Match match : matches) {
+            cost += match.postings.size();
+        }
+        return cost;
+    }
+
+    /**
+     * Films matching any of the terms, with the best score among them. Lists are merged pairwise
+     * like in a merge sort, so each id is copied log(terms) times.
+     */
+    private static Scored scored(List<Match> matches) {
+        List<Scored> lists = new ArrayList<>(matches.size() * 2);
+        for (Match match : matches) {
+            lists.add(new Scored(match.postings.name.toLongArray(), NAME_WEIGHT * match.idf));
+            lists.add(new Scored(match.postings.description.toLongArray(), match.idf));
+        }
+        while (lists.size() > 1) {
+            List<Scored> merged = new ArrayList<>((lists.size() + 1) / 2);
+            for (int i = 0; i < lists.size(); i += 2) {
+                merged.add(i + 1 < lists.size() ? union(lists.get(i), lists.get(i + 1)) : lists.get(i));
+            }
+            lists = merged;
+        }
+        return lists.get(0);
+    }
+
+    private static Scored union(Scored a, Scored b) {
+        Scored union = new Scored(a.size + b.size);
+        int i = 0;
+        int j = 0;
+        while (i < a.size || j < b.size) {
+            if (j == b.size || i < a.size && a.ids[i] < b.ids[j]) {
+                union.add(a.ids[i], a.scores[i++]);
+            } else if (i == a.size || b.ids[j] < a.ids[i]) {
+                union.add(b.ids[j], b.scores[j++]);
+            } else {
+                union.add(a.ids[i], Math.max(a.scores[i++], b.scores[j++]));
+            }
+        }
+        return union;
+    }
+
+    /**
+     * Candidates matching any of the terms, with the best of their scores added.
+     */
+    private static Scored retain(Scored candidates, List<Match> matches) {
+        double[] best = new double[candidates.size];
+        int[] slots = slots(candidates);
+        for (Match match : matches) {
+            mark(candidates, slots, match.postings.name, NAME_WEIGHT * match.idf, best);
+            mark(candidates, slots, match.postings.description, match.idf, best);
+        }
+        Scored retained = new Scored(candidates.size);
+        for (int i = 0; i < candidates.size; i++) {
+            if (best[i] > 0) {
+                retained.add(candidates.ids[i], candidates.scores[i] + best[i]);
+            }
+        }
+        return retained;
+    }
+
+    /**
+     * Open addressing table from film id to candidate position + 1, 0 marking a free slot.
+     */
+    private static int[] slots(Scored candidates) {
+        int[] slots = new int[Integer.highestOneBit(Math.max(candidates.size, 1)) << 2];
+        for (int i = 0; i < candidates.size; i++) {
+            int slot = slot(candidates.ids[i], slots.length);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            slots[slot] = i + 1;
+        }
+        return slots;
+    }
+
+    private static int slot(long filmId, int tableSize) {
+        return (int) ((filmId * 0x9E3779B97F4A7C15L) >>> 40) & (tableSize - 1);
+    }
+
+    /**
+     * Raises best[i] to score for every candidate in postings. Looks the postings up in the
+     * candidate table, or the candidates up in the postings when the postings are much longer.
+     */
+    private static void mark(Scored candidates, int[] slots, LongSortedSet postings, double score, double[] best) {
+        if (postings.size() > (long) candidates.size * PROBE_COST) {
+            for (int i = 0; i < candidates.size; i++) {
+                if (best[i] < score && postings.contains(candidates.ids[i])) {
+                    best[i] = score;
+                }
+            }
+            return;
+        }
+        for (long filmId : postings.toLongArray()) {
+            for (int slot = slot(filmId, slots.length); slots[slot] != 0; slot = (slot + 1) & (slots.length - 1)) {
+                int i = slots[slot] - 1;
+                if (candidates.ids[i] == filmId) {
+                    best[i] = Math.max(best[i], score);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * The limit best films by text score blended with likes, kept sorted by insertion. Candidates
+     * are visited by descending text score, so once even the most liked film's boost can't lift
+     * one into the results, the rest are skipped without looking up their likes.
+     */
+    private long[] top(Scored candidates, int limit) {
+        long[] order = new long[candidates.size];
+        for (int i = 0; i < candidates.size; i++) {
+            order[i] = (long) Float.floatToIntBits((float) candidates.scores[i]) << 32 | i;
+        }
+        Arrays.sort(order);
+        // the order is by float scores, the margin keeps the bound safe for doubles rounded alike
+        double maxBoost = boost(popularFilmsIndex.getMaxLikes()) * (1 + 1e-6);
+        long[] ids = new long[Math.min(limit, candidates.size)];
+        double[] scores = new double[ids.length];
+        int found = 0;
+        for (int k = order.length - 1; k >= 0; k--) {
+            int i = (int) order[k];
+            if (found == ids.length && candidates.scores[i] * maxBoost < scores[found - 1]) {
+                break;
+            }
+            long filmId = candidates.ids[i];
+            double score = candidates.scores[i] * boost(popularFilmsIndex.getLikes(filmId));
+            if (found == ids.length && !ranksBefore(score, filmId, scores[found - 1], ids[found - 1])) {
+                continue;
+            }
+            int at = found == ids.length ? found - 1 : found++;
+            while (at > 0 && ranksBefore(score, filmId, scores[at - 1], ids[at - 1])) {
+                ids[at] = ids[at - 1];
+                scores[at] = scores[at - 1];
+                at--;
+            }
+            ids[at] = filmId;
+            scores[at] = score;
+        }
+        return ids;
+    }
+
+    private static double boost(int likes) {
+        return 1 + LIKES_WEIGHT * Math.log1p(Math.max(likes, 0));
+    }
+
+    private static boolean ranksBefore(double score, long filmId, double otherScore, long otherId) {
+        return score > otherScore || score == otherScore && filmId < otherId;
+    }
+
+    /**
+     * Films having a term. Films keep the term string of their postings, so every term is stored once.
+     */
+    private static final class Postings {
+        private final String term;
+        private final LongSortedSet name = new LongSortedSet();
+        private final LongSortedSet description = new LongSortedSet();
+
+        private Postings(String term) {
+            this.term = term;
+        }
+
+        private int size() {
+            return Math.max(name.size() + description.size(), 1);
+        }
+    }
+
+    private static final class FilmTerms {
+        private final String[] name;
+        private final String[] description;
+
+        private FilmTerms(String[] name, String[] description) {
+            this.name = name;
+            this.description = description;
+        }
+    }
+
+    /**
+     * Film ids in ascending order with their scores.
+     */
+    private static final class Scored {
+        private final long[] ids;
+        private final double[] scores;
+        private int size;
+
+        private Scored(int capacity) {
+            this.ids = new long[capacity];
+            this.scores = new double[capacity];
+        }
+
+        private Scored(long[] ids, double score) {
+            this.ids = ids;
+            this.scores = new double[ids.length];
+            this.size = ids.length;
+            Arrays.fill(scores, score);
+        }
+
+        private void add(long id, double score) {
+            ids[size] = id;
+            scores[size++] = score;
+        }
+    }
+
+    private static final class Match {
+        private final Postings postings;
+        private final double idf;
+
+        private Match(Postings postings, double idf) {
+            this.postings = postings;
+            this.idf = idf;
+        }
+    }
+}
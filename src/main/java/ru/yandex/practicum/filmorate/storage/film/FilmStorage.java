@@ -13,7 +13,14 @@ public interface FilmStorage {
 
     List<Film> getFilms();
 
+    List<Film> getFilms(long after, int limit);
+
     Film findFilmById(long id);
 
+    /**
+     * Returns the films with the given ids in the order of the ids, skipping ids that don't exist.
+     */
+    List<Film> findFilmsByIds(long[] ids);
+
     void deleteFilm(long id);
 }
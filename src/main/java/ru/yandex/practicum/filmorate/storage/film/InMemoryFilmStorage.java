@@ -5,27 +5,32 @@ import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.LongSortedSet;
 
 import java.time.LocalDate;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component
 public class InMemoryFilmStorage implements FilmStorage {
 
-    private final Map<Long, Film> films = new HashMap<>();
-    private long filmId = 1;
+    private final ConcurrentNavigableMap<Long, Film> films = new ConcurrentSkipListMap<>();
+    private final AtomicLong filmId = new AtomicLong(1);
     private static final LocalDate MOVIE_BIRTHDAY = LocalDate.of(1895, 12, 28);
 
     private long generateId() {
-        return filmId++;
+        return filmId.getAndIncrement();
     }
 
     @Override
     public Film createFilm(Film film) throws ValidationException {
         if (validate(film)) {
+            film.setLikes(new LongSortedSet(film.getLikes()));
             film.setId(generateId());
             films.put(film.getId(), film);
         }
@@ -36,10 +41,13 @@ public class InMemoryFilmStorage implements FilmStorage {
     @Override
     public Film updateFilm(Film film) throws ValidationException {
         if (validate(film)) {
-            if (film.getId() != 0 && films.containsKey(film.getId())) {
-                films.put(film.getId(), film);
+            if (film.getId() != 0 && films.computeIfPresent(film.getId(), (id, stored) -> {
+                film.setLikes(stored.getLikes());
+                return film;
+            }) != null) {
                 log.info("Film with id {} was updated", film.getId());
             } else if (film.getId() == 0) {
+                film.setLikes(new LongSortedSet(film.getLikes()));
                 film.setId(generateId());
                 films.put(film.getId(), film);
                 log.info("Film not found in library. The film was added with id {}", film.getId());
@@ -55,19 +63,49 @@ public class InMemoryFilmStorage implements FilmStorage {
         return List.copyOf(films.values());
     }
 
+    @Override
+    public List<Film> getFilms(long after, int limit) {
+        return films.tailMap(after, false).values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public Film findFilmById(long id) {
-        if (!films.containsKey(id)) {
+        Film film = films.get(id);
+        if (film == null) {
             log.debug("Incorrect id");
             throw new FilmNotFoundException(String.format("Film with id %d not found", id));
         }
-        return films.get(id);
+        return film;
+    }
+
+    @Override
+    public List<Film> findFilmsByIds(long[] ids) {
+        List<Film> found = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            Film film = films.get(id);
+            if (film != null) {
+                found.add(film);
+            }
+        }
+        return found;
     }
 
     public void deleteFilm(long id) {
         films.remove(id);
     }
 
+    /**
+     * Puts films loaded from a snapshot, keeping their ids and likes. Safe to call from several threads.
+     */
+    public void restoreFilms(List<Film> restored) {
+        for (Film film : restored) {
+            films.put(film.getId(), film);
+            filmId.accumulateAndGet(film.getId() + 1, Math::max);
+        }
+    }
+
     private boolean validate(Film film) throws ValidationException {
         if (film.getName().isBlank()) {
             log.debug("Incorrect film name");
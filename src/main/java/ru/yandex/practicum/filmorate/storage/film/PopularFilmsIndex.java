@@ -0,0 +1,305 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.AfterCommit;
+
+import javax.annotation.PostConstruct;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+
+/**
+ * Films ranked by likes (most liked first, then by id, like the popular films query) in one
+ * skip list for all films and one per genre and per MPA rating. A filtered top-N walks the
+ * matching facet from the top and stops after N films, instead of a grouped join over all films.
+ * Year filters are checked on the films met along the way.
+ * <p>
+ * Loaded at startup, then updated by the like and film writes once their transaction commits.
+ * A like moves the film by inserting its new rank before removing the old one, so readers never
+ * miss it; a reader that sees both skips the second.
+ * <p>
+ * A reload builds a new ranking while readers keep using the current one. Changes applied while
+ * the films are read are applied to the new ranking too, and it replaces the current one under the
+ * same lock as changes are applied, so no change is lost. A like whose transaction commits just as
+ * the reload starts may be counted by both the read and the replay.
+ */
+@Slf4j
+@Component
+public class PopularFilmsIndex {
+
+    private static final String QUERY_GET_FILM_RANKS = "SELECT film_id, likes_count, mpa_rating_id, release_date " +
+            "FROM films";
+    private static final String QUERY_GET_FILM_GENRES = "SELECT film_id, genre_id FROM film_genres";
+    private static final Comparator<Rank> RANK_ORDER = Comparator.comparingInt((Rank rank) -> rank.likes).reversed()
+            .thenComparingLong(rank -> rank.filmId);
+    private static final int[] NO_GENRES = new int[0];
+    private static final int INITIAL_RESULT_CAPACITY = 64;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Object loadLock = new Object();
+    private volatile Ranking ranking = new Ranking();
+    private List<Consumer<Ranking>> changesDuringLoad;
+
+    @Autowired
+    public PopularFilmsIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void load() {
+        synchronized (loadLock) {
+            synchronized (this) {
+                changesDuringLoad = new ArrayList<>();
+            }
+            Ranking loaded = new Ranking();
+            boolean complete = false;
+            try {
+                read(loaded);
+                complete = true;
+            } finally {
+                synchronized (this) {
+                    if (complete) {
+                        changesDuringLoad.forEach(change -> change.accept(loaded));
+                        ranking = loaded;
+                    }
+                    changesDuringLoad = null;
+                }
+            }
+            log.info("Popular films index loaded for {} films", loaded.films.size());
+        }
+    }
+
+    /**
+     * Adds a film or updates its MPA rating, genres and release year. Null genreIds keeps the
+     * current genres, as FilmDbStorage.updateFilm does.
+     */
+    public void putFilm(long filmId, int mpaId, Collection<Integer> genreIds, int year) {
+        AfterCommit.run(() -> apply(current -> current.putFilm(filmId, mpaId, genreIds, year)));
+    }
+
+    public void removeFilm(long filmId) {
+        AfterCommit.run(() -> apply(current -> current.removeFilm(filmId)));
+    }
+
+    public void changeLikes(long filmId, int delta) {
+        if (delta != 0) {
+            AfterCommit.run(() -> apply(current -> current.moveFilm(filmId, delta)));
+        }
+    }
+
+    public void changeLikes(Map<Long, Integer> deltas) {
+        AfterCommit.run(() -> apply(current -> deltas.forEach(current::moveFilm)));
+    }
+
+    public int getLikes(long filmId) {
+        FilmFacets film = ranking.films.get(filmId);
+        return film == null ? 0 : film.rank.likes;
+    }
+
+    /**
+     * Likes of the most liked film. May briefly overstate it while a film is being moved down.
+     */
+    public int getMaxLikes() {
+        Iterator<Rank> ranks = ranking.all.iterator();
+        return ranks.hasNext() ? ranks.next().likes : 0;
+    }
+
+    /**
+     * Ids of the most liked films matching all given filters; null filters match every film.
+     * The result array grows with the films found, so a large count costs no more than the facet holds.
+     */
+    public long[] getPopularFilmIds(int count, Integer genreId, Integer mpaId, Integer fromYear, Integer toYear) {
+        Ranking current = ranking;
+        NavigableSet<Rank> facet = current.all;
+        if (mpaId != null) {
+            facet = current.byMpa.get(mpaId);
+        } else if (genreId != null) {
+            facet = current.byGenre.get(genreId);
+        }
+        if (facet == null) {
+            return new long[0];
+        }
+        long[] ids = new long[Math.min(count, INITIAL_RESULT_CAPACITY)];
+        int found = 0;
+        Set<Long> seen = new HashSet<>();
+        for (Rank rank : facet) {
+            if (found == count) {
+                break;
+            }
+            FilmFacets film = current.films.get(rank.filmId);
+            if (film == null || film.rank.likes != rank.likes || !seen.add(rank.filmId)) {
+                continue;
+            }
+            if ((genreId == null || film.hasGenre(genreId))
+                    && (mpaId == null || film.mpaId == mpaId)
+                    && (fromYear == null || film.year >= fromYear)
+                    && (toYear == null || film.year <= toYear)) {
+                if (found == ids.length) {
+                    ids = Arrays.copyOf(ids, (int) Math.min(count, 2L * ids.length));
+                }
+                ids[found++] = rank.filmId;
+            }
+        }
+        return found == count ? ids : Arrays.copyOf(ids, found);
+    }
+
+    private void read(Ranking loaded) {
+        Map<Long, FilmFacets> films = new HashMap<>();
+        jdbcTemplate.query(QUERY_GET_FILM_RANKS, resultSet -> {
+            long filmId = resultSet.getLong("film_id");
+            Date releaseDate = resultSet.getDate("release_date");
+            films.put(filmId, new FilmFacets(new Rank(filmId, resultSet.getInt("likes_count")),
+                    resultSet.getInt("mpa_rating_id"), NO_GENRES,
+                    releaseDate == null ? 0 : releaseDate.toLocalDate().getYear()));
+        });
+        Map<Long, Set<Integer>> genres = new HashMap<>();
+        jdbcTemplate.query(QUERY_GET_FILM_GENRES, resultSet -> {
+            genres.computeIfAbsent(resultSet.getLong("film_id"), key -> new HashSet<>()).add(resultSet.getInt("genre_id"));
+        });
+        for (FilmFacets facets : films.values()) {
+            Set<Integer> filmGenres = genres.get(facets.rank.filmId);
+            FilmFacets film = filmGenres == null ? facets : facets.withFacets(facets.mpaId, toArray(filmGenres), facets.year);
+            loaded.films.put(film.rank.filmId, film);
+            loaded.addToFacets(film.rank, film, null);
+        }
+    }
+
+    private synchronized void apply(Consumer<Ranking> change) {
+        change.accept(ranking);
+        if (changesDuringLoad != null) {
+            changesDuringLoad.add(change);
+        }
+    }
+
+    private static int[] toArray(Collection<Integer> genreIds) {
+        return genreIds.stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+    }
+
+    private static final class Ranking {
+        private final Map<Long, FilmFacets> films = new ConcurrentHashMap<>();
+        private final NavigableSet<Rank> all = new ConcurrentSkipListSet<>(RANK_ORDER);
+        private final Map<Integer, NavigableSet<Rank>> byGenre = new ConcurrentHashMap<>();
+        private final Map<Integer, NavigableSet<Rank>> byMpa = new ConcurrentHashMap<>();
+
+        private void putFilm(long filmId, int mpaId, Collection<Integer> genreIds, int year) {
+            films.compute(filmId, (id, current) -> {
+                int[] genres = genreIds == null ? (current == null ? NO_GENRES : current.genreIds) : toArray(genreIds);
+                FilmFacets updated = current == null
+                        ? new FilmFacets(new Rank(filmId, 0), mpaId, genres, year)
+                        : current.withFacets(mpaId, genres, year);
+                addToFacets(updated.rank, updated, current);
+                if (current != null) {
+                    removeFromFacets(current.rank, current, updated);
+                }
+                return updated;
+            });
+        }
+
+        private void removeFilm(long filmId) {
+            FilmFacets removed = films.remove(filmId);
+            if (removed != null) {
+                removeFromFacets(removed.rank, removed, null);
+            }
+        }
+
+        private void moveFilm(long filmId, int delta) {
+            films.computeIfPresent(filmId, (id, current) -> {
+                FilmFacets moved = current.withLikes(current.rank.likes + delta);
+                addToFacets(moved.rank, moved, null);
+                removeFromFacets(current.rank, current, null);
+                return moved;
+            });
+        }
+
+        /**
+         * Adds the rank to every facet of the film, skipping the facets of except.
+         */
+        private void addToFacets(Rank rank, FilmFacets film, FilmFacets except) {
+            if (except == null) {
+                all.add(rank);
+            }
+            if (film.mpaId != 0 && (except == null || except.mpaId != film.mpaId)) {
+                byMpa.computeIfAbsent(film.mpaId, key -> new ConcurrentSkipListSet<>(RANK_ORDER)).add(rank);
+            }
+            for (int genreId : film.genreIds) {
+                if (except == null || !except.hasGenre(genreId)) {
+                    byGenre.computeIfAbsent(genreId, key -> new ConcurrentSkipListSet<>(RANK_ORDER)).add(rank);
+                }
+            }
+        }
+
+        /**
+         * Removes the rank from every facet of the film, keeping it in the facets of except.
+         */
+        private void removeFromFacets(Rank rank, FilmFacets film, FilmFacets except) {
+            if (except == null) {
+                all.remove(rank);
+            }
+            if (film.mpaId != 0 && (except == null || except.mpaId != film.mpaId)) {
+                NavigableSet<Rank> facet = byMpa.get(film.mpaId);
+                if (facet != null) {
+                    facet.remove(rank);
+                }
+            }
+            for (int genreId : film.genreIds) {
+                if (except == null || !except.hasGenre(genreId)) {
+                    NavigableSet<Rank> facet = byGenre.get(genreId);
+                    if (facet != null) {
+                        facet.remove(rank);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Rank {
+        private final long filmId;
+        private final int likes;
+
+        private Rank(long filmId, int likes) {
+            this.filmId = filmId;
+            this.likes = likes;
+        }
+    }
+
+    private static final class FilmFacets {
+        private final Rank rank;
+        private final int mpaId;
+        private final int[] genreIds;
+        private final int year;
+
+        private FilmFacets(Rank rank, int mpaId, int[] genreIds, int year) {
+            this.rank = rank;
+            this.mpaId = mpaId;
+            this.genreIds = genreIds;
+            this.year = year;
+        }
+
+        private FilmFacets withLikes(int likes) {
+            return new FilmFacets(new Rank(rank.filmId, likes), mpaId, genreIds, year);
+        }
+
+        private FilmFacets withFacets(int mpaId, int[] genreIds, int year) {
+            return new FilmFacets(rank, mpaId, genreIds, year);
+        }
+
+        private boolean hasGenre(int genreId) {
+            return Arrays.binarySearch(genreIds, genreId) >= 0;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package ru.yandex.practicum.filmorate.storage.reference;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.mapRow.RowTo;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.ResourceVersions;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Read-through cache for the mpa_ratings and genres tables. Both are loaded at startup into
+ * immutable arrays indexed by id; a lookup of an unknown id goes to the database once and
+ * reloads the table if the row turned up. Ids that weren't found are remembered for
+ * {@value #MISSING_ID_TTL_SECONDS} seconds, so repeated requests for them don't reach the database.
+ * Call {@link #invalidate()} after writing either table. Every reload bumps the ETag version of
+ * genres and MPA ratings in {@link ResourceVersions}.
+ * <p>
+ * Lookups are counted in the {@value #METRIC_NAME} counter, tagged with {@code result=hit|miss};
+ * a miss is a lookup that had to go to the database.
+ */
+@Slf4j
+@Component
+public class ReferenceDataCache {
+
+    static final String METRIC_NAME = "filmorate.reference.cache";
+    private static final long MISSING_ID_TTL_SECONDS = 10;
+    private static final int MAX_MISSING_IDS = 1024;
+
+    private static final String QUERY_GET_ALL_MPA = "SELECT * FROM mpa_ratings ORDER BY mpa_rating_id";
+    private static final String QUERY_GET_MPA_BY_ID = "SELECT * FROM mpa_ratings WHERE mpa_rating_id = ?";
+    private static final String QUERY_GET_ALL_GENRES = "SELECT * FROM genres ORDER BY genre_id";
+    private static final String QUERY_GET_GENRE_BY_ID = "SELECT * FROM genres WHERE genre_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ResourceVersions resourceVersions;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile Snapshot<Mpa> mpa = Snapshot.empty();
+    private volatile Snapshot<Genre> genres = Snapshot.empty();
+    private final Map<Long, Long> missingMpaIds = new ConcurrentHashMap<>();
+    private final Map<Long, Long> missingGenreIds = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReferenceDataCache(JdbcTemplate jdbcTemplate, ResourceVersions resourceVersions, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.resourceVersions = resourceVersions;
+        registerCounter(meterRegistry, "hit", ReferenceDataCache::getHits);
+        registerCounter(meterRegistry, "miss", ReferenceDataCache::getMisses);
+    }
+
+    @PostConstruct
+    public void invalidate() {
+        reloadMpa();
+        reloadGenres();
+        log.info("Reference data loaded: {} mpa ratings, {} genres", mpa.values.size(), genres.values.size());
+    }
+
+    public List<Mpa> getMpa() {
+        hits.increment();
+        return mpa.values;
+    }
+
+    public Mpa findMpaById(long id) {
+        Mpa cached = mpa.get(id);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        if (isKnownMissing(missingMpaIds, id)) {
+            hits.increment();
+            return null;
+        }
+        misses.increment();
+        if (jdbcTemplate.query(QUERY_GET_MPA_BY_ID, RowTo::mapRowToMpa, id).isEmpty()) {
+            rememberMissing(missingMpaIds, id);
+            return null;
+        }
+        reloadMpa();
+        return mpa.get(id);
+    }
+
+    public List<Genre> getGenres() {
+        hits.increment();
+        return genres.values;
+    }
+
+    public Genre findGenreById(long id) {
+        Genre cached = genres.get(id);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        if (isKnownMissing(missingGenreIds, id)) {
+            hits.increment();
+            return null;
+        }
+        misses.increment();
+        if (jdbcTemplate.query(QUERY_GET_GENRE_BY_ID, RowTo::mapRowToGenre, id).isEmpty()) {
+            rememberMissing(missingGenreIds, id);
+            return null;
+        }
+        reloadGenres();
+        return genres.get(id);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private void registerCounter(MeterRegistry meterRegistry, String result, ToDoubleFunction<ReferenceDataCache> count) {
+        FunctionCounter.builder(METRIC_NAME, this, count)
+                .description("Lookups of MPA ratings and genres")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static boolean isKnownMissing(Map<Long, Long> missingIds, long id) {
+        Long expiresAt = missingIds.get(id);
+        return expiresAt != null && expiresAt - System.nanoTime() > 0;
+    }
+
+    /**
+     * Remembers an id that isn't in the table. The map is cleared when full, so arbitrary ids
+     * can't grow it without bound.
+     */
+    private static void rememberMissing(Map<Long, Long> missingIds, long id) {
+        if (missingIds.size() >= MAX_MISSING_IDS) {
+            missingIds.clear();
+        }
+        missingIds.put(id, System.nanoTime() + TimeUnit.SECONDS.toNanos(MISSING_ID_TTL_SECONDS));
+    }
+
+    private synchronized void reloadMpa() {
+        List<Mpa> values = jdbcTemplate.query(QUERY_GET_ALL_MPA, RowTo::mapRowToMpa);
+        Mpa[] byId = new Mpa[values.isEmpty() ? 0 : values.get(values.size() - 1).getId() + 1];
+        for (Mpa value : values) {
+            byId[value.getId()] = value;
+        }
+        mpa = new Snapshot<>(List.copyOf(values), byId);
+        missingMpaIds.clear();
+        resourceVersions.referenceDataChanged();
+    }
+
+    private synchronized void reloadGenres() {
+        List<Genre> values = jdbcTemplate.query(QUERY_GET_ALL_GENRES, RowTo::mapRowToGenre);
+        Genre[] byId = new Genre[values.isEmpty() ? 0 : values.get(values.size() - 1).getId() + 1];
+        for (Genre value : values) {
+            byId[value.getId()] = value;
+        }
+        genres = new Snapshot<>(List.copyOf(values), byId);
+        missingGenreIds.clear();
+        resourceVersions.referenceDataChanged();
+    }
+
+    private static final class Snapshot<T> {
+        private final List<T> values;
+        private final T[] byId;
+
+        private Snapshot(List<T> values, T[] byId) {
+            this.values = values;
+            this.byId = byId;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Snapshot<T> empty() {
+            return new Snapshot<>(List.of(), (T[]) new Object[0]);
+        }
+
+        private T get(long id) {
+            return id > 0 && id < byId.length ? byId[(int) id] : null;
+        }
+    }
+}
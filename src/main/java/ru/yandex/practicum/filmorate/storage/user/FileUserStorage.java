@@ -0,0 +1,196 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.LogStore;
+import ru.yandex.practicum.filmorate.storage.LongSortedSet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * UserStorage on the append-only user and friendship logs of {@link LogStore}, so users and
+ * friendships survive restarts. Users are keyed by id, friendships are user id - friend id edges,
+ * one per direction.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.file.enabled", havingValue = "true")
+public class FileUserStorage implements UserStorage {
+
+    private final LogStore users;
+    private final LogStore friends;
+    private final AtomicLong userId;
+
+    @Autowired
+    public FileUserStorage(@Qualifier("userLog") LogStore users, @Qualifier("friendLog") LogStore friends) {
+        this.users = users;
+        this.friends = friends;
+        this.userId = new AtomicLong(users.highestKey() + 1);
+    }
+
+    @Override
+    public synchronized User createUser(User user) throws ValidationException {
+        if (validate(user)) {
+            user.setId(userId.getAndIncrement());
+            users.put(user.getId(), 0, encode(user));
+            if (user.getFriends() != null) {
+                user.getFriends().forEach(friendId -> friends.put(user.getId(), friendId, new byte[0]));
+            }
+            user.setFriends(friendsOf(user.getId()));
+        }
+        log.info("User was created with id {}", user.getId());
+        return user;
+    }
+
+    @Override
+    public synchronized User updateUser(User user) throws ValidationException {
+        if (validate(user)) {
+            if (user.getId() != 0 && users.contains(user.getId(), 0)) {
+                users.put(user.getId(), 0, encode(user));
+                user.setFriends(friendsOf(user.getId()));
+                log.info("User with id {} was updated", user.getId());
+            } else if (user.getId() == 0) {
+                return createUser(user);
+            } else {
+                log.info("User with id {} not found.", user.getId());
+                throw new UserNotFoundException(String.format("User with id %d wasn't found", user.getId()));
+            }
+        }
+        return user;
+    }
+
+    @Override
+    public List<User> getUsers() {
+        return users.values().stream().map(this::decode).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<User> getUsers(long after, int limit) {
+        return users.values(after, limit).stream().map(this::decode).collect(Collectors.toList());
+    }
+
+    @Override
+    public User findUserById(long id) {
+        byte[] user = users.get(id, 0);
+        if (user == null) {
+            log.debug("Incorrect id");
+            throw new UserNotFoundException(String.format("User with id %d wasn't found", id));
+        }
+        return decode(user);
+    }
+
+    @Override
+    public List<User> findUsersByIds(long[] ids) {
+        List<User> found = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            byte[] user = users.get(id, 0);
+            if (user != null) {
+                found.add(decode(user));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Deletes the user and the user's own friend list; other users keep the user among their friends.
+     */
+    @Override
+    public synchronized void deleteUser(long id) {
+        if (users.remove(id, 0)) {
+            friends.removeAll(id);
+        }
+    }
+
+    public synchronized boolean addFriend(long id, long friendId) {
+        for (long userId : new long[]{id, friendId}) {
+            if (!users.contains(userId, 0)) {
+                throw new UserNotFoundException(String.format("User with id %d wasn't found", userId));
+            }
+        }
+        boolean added = !friends.contains(id, friendId);
+        friends.put(id, friendId, new byte[0]);
+        return added;
+    }
+
+    public boolean deleteFriend(long id, long friendId) {
+        return friends.remove(id, friendId);
+    }
+
+    /**
+     * Sorted ids of the user's friends.
+     */
+    public long[] getFriendIds(long id) {
+        return friends.keys(id);
+    }
+
+    private LongSortedSet friendsOf(long id) {
+        LongSortedSet userFriends = new LongSortedSet();
+        for (long friendId : friends.keys(id)) {
+            userFriends.add(friendId);
+        }
+        return userFriends;
+    }
+
+    private static byte[] encode(User user) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(user.getId());
+            out.writeUTF(user.getName());
+            out.writeUTF(user.getEmail());
+            out.writeUTF(user.getLogin());
+            out.writeLong(user.getBirthday().toEpochDay());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private User decode(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            long id = in.readLong();
+            return User.builder()
+                    .id(id)
+                    .name(in.readUTF())
+                    .email(in.readUTF())
+                    .login(in.readUTF())
+                    .birthday(LocalDate.ofEpochDay(in.readLong()))
+                    .friends(friendsOf(id))
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean validate(User user) throws ValidationException {
+        if (user.getEmail().isBlank() || !user.getEmail().contains("@")) {
+            log.debug("Incorrect email");
+            throw new ValidationException("email");
+        } else if (user.getLogin().isBlank()) {
+            log.debug("Incorrect login");
+            throw new ValidationException("login");
+        } else if (user.getBirthday().isAfter(LocalDate.now())) {
+            log.debug("Incorrect birthday");
+            throw new ValidationException("birthday");
+        } else if (user.getName() == null || user.getName().isBlank()) {
+            user.setName(user.getLogin());
+            log.info("Name has been changed to value {}", user.getLogin());
+        }
+        return true;
+    }
+}
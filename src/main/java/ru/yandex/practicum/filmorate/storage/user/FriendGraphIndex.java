@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.AfterCommit;
+import ru.yandex.practicum.filmorate.storage.LongSortedSet;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of the friends table: for every user the sorted ids of the users it added
+ * as friends. Loaded once at startup and kept in step with friend writes, which are applied
+ * here only after their transaction commits.
+ */
+@Slf4j
+@Component
+public class FriendGraphIndex {
+
+    private static final long[] NO_FRIENDS = new long[0];
+    /**
+     * Most second-hop edges a friend suggestion query visits.
+     */
+    private static final long MAX_SUGGESTION_EDGES = 1_000_000;
+    private static final String QUERY_GET_ALL_FRIEND_EDGES = "SELECT request_user_id, accept_user_id FROM friends";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Long, LongSortedSet> friends = new ConcurrentHashMap<>();
+
+    @Autowired
+    public FriendGraphIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void load() {
+        friends.clear();
+        jdbcTemplate.query(QUERY_GET_ALL_FRIEND_EDGES, resultSet -> {
+            addEdge(resultSet.getLong("request_user_id"), resultSet.getLong("accept_user_id"));
+        });
+        log.info("Friend graph loaded for {} users", friends.size());
+    }
+
+    public void addFriend(long id, long friendId) {
+        AfterCommit.run(() -> addEdge(id, friendId));
+    }
+
+    public void deleteFriend(long id, long friendId) {
+        AfterCommit.run(() -> {
+            LongSortedSet userFriends = friends.get(id);
+            if (userFriends != null) {
+                userFriends.remove(friendId);
+            }
+        });
+    }
+
+    public long[] getFriendIds(long id) {
+        LongSortedSet userFriends = friends.get(id);
+        return userFriends == null ? NO_FRIENDS : userFriends.toLongArray();
+    }
+
+    public boolean isFriend(long id, long friendId) {
+        LongSortedSet userFriends = friends.get(id);
+        return userFriends != null && userFriends.contains(friendId);
+    }
+
+    public long[] getCommonFriendIds(long id, long otherId) {
+        return LongSortedSet.intersect(getFriendIds(id), getFriendIds(otherId));
+    }
+
+    /**
+     * Users that the user's friends have as friends and the user hasn't, most mutual friends
+     * first; ties go to the lower id. Only the friends with the fewest friends are visited, as many
+     * as fit into {@link #MAX_SUGGESTION_EDGES} edges, so a user following hubs still gets
+     * suggestions from its smaller circles. The visited friends are walked in parallel on the
+     * common fork-join pool.
+     */
+    public long[] getFriendSuggestionIds(long id, int limit) {
+        long[] userFriends = getFriendIds(id);
+        long[][] friendsOfFriends = Arrays.stream(userFriends)
+                .mapToObj(this::getFriendIds)
+                .sorted(Comparator.comparingInt(ids -> ids.length))
+                .toArray(long[][]::new);
+        int visited = 0;
+        long edges = 0;
+        while (visited < friendsOfFriends.length && edges + friendsOfFriends[visited].length <= MAX_SUGGESTION_EDGES) {
+            edges += friendsOfFriends[visited++].length;
+        }
+        Map<Long, Integer> mutualFriends = Arrays.stream(friendsOfFriends, 0, visited).parallel()
+                .collect(HashMap::new, (counts, ids) -> {
+                    for (long candidate : ids) {
+                        if (candidate != id && Arrays.binarySearch(userFriends, candidate) < 0) {
+                            counts.merge(candidate, 1, Integer::sum);
+                        }
+                    }
+                }, (counts, other) -> other.forEach((candidate, count) -> counts.merge(candidate, count, Integer::sum)));
+        return mutualFriends.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .mapToLong(Map.Entry::getKey)
+                .toArray();
+    }
+
+    private void addEdge(long id, long friendId) {
+        friends.computeIfAbsent(id, key -> new LongSortedSet()).add(friendId);
+    }
+}
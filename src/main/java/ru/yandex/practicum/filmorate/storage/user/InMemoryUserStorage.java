@@ -5,25 +5,30 @@ import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.LongSortedSet;
 
 import java.time.LocalDate;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component
 public class InMemoryUserStorage implements UserStorage {
-    private final Map<Long, User> users = new HashMap<>();
-    private long userId = 1;
+    private final ConcurrentNavigableMap<Long, User> users = new ConcurrentSkipListMap<>();
+    private final AtomicLong userId = new AtomicLong(1);
 
     private long generateId() {
-        return userId++;
+        return userId.getAndIncrement();
     }
 
     @Override
     public User createUser(User user) throws ValidationException {
         if (validate(user)) {
+            user.setFriends(new LongSortedSet(user.getFriends()));
             user.setId(generateId());
             users.put(user.getId(), user);
         }
@@ -34,10 +39,13 @@ public class InMemoryUserStorage implements UserStorage {
     @Override
     public User updateUser(User user) throws ValidationException {
         if (validate(user)) {
-            if (user.getId() != 0 && users.containsKey(user.getId())) {
-                users.put(user.getId(), user);
+            if (user.getId() != 0 && users.computeIfPresent(user.getId(), (id, stored) -> {
+                user.setFriends(stored.getFriends());
+                return user;
+            }) != null) {
                 log.info("User with id {} was updated", user.getId());
             } else if(user.getId() == 0) {
+                user.setFriends(new LongSortedSet(user.getFriends()));
                 user.setId(generateId());
                 users.put(user.getId(), user);
                 log.info("User with id {} not found. Instead of updating the user was created", user.getId());
@@ -54,13 +62,33 @@ public class InMemoryUserStorage implements UserStorage {
         return List.copyOf(users.values());
     }
 
+    @Override
+    public List<User> getUsers(long after, int limit) {
+        return users.tailMap(after, false).values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public User findUserById(long id) {
-        if (!users.containsKey(id)) {
+        User user = users.get(id);
+        if (user == null) {
             log.debug("Incorrect id");
             throw new UserNotFoundException(String.format("User with id %d wasn't found", id));
         }
-        return users.get(id);
+        return user;
+    }
+
+    @Override
+    public List<User> findUsersByIds(long[] ids) {
+        List<User> found = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            User user = users.get(id);
+            if (user != null) {
+                found.add(user);
+            }
+        }
+        return found;
     }
 
     @Override
@@ -68,6 +96,16 @@ public class InMemoryUserStorage implements UserStorage {
         users.remove(id);
     }
 
+    /**
+     * Puts users loaded from a snapshot, keeping their ids and friends. Safe to call from several threads.
+     */
+    public void restoreUsers(List<User> restored) {
+        for (User user : restored) {
+            users.put(user.getId(), user);
+            userId.accumulateAndGet(user.getId() + 1, Math::max);
+        }
+    }
+
     private boolean validate(User user) throws ValidationException {
         if (user.getEmail().isBlank() || !user.getEmail().contains("@")) {
             log.debug("Incorrect email");
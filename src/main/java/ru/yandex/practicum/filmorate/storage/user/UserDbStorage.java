@@ -2,10 +2,12 @@ package ru.yandex.practicum.filmorate.storage.user;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.ConflictException;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.mapRow.RowTo;
@@ -13,8 +15,13 @@ import ru.yandex.practicum.filmorate.model.User;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Component
@@ -22,11 +29,20 @@ public class UserDbStorage implements UserStorage {
     private final JdbcTemplate jdbcTemplate;
     private static final String QUERY_CREATE_USER = "INSERT INTO users (user_name, login, email, birthday) " +
             "VALUES (?, ?, ?, ?)";
-    private static final String QUERY_UPDATE_USER = "UPDATE users " +
-            "SET user_name = ?, login = ?, email = ?, birthday = ? " +
-            "WHERE user_id = ?";
+    private static final String QUERY_UPDATE_USER = "SELECT version FROM FINAL TABLE (UPDATE users " +
+            "SET user_name = ?, login = ?, email = ?, birthday = ?, version = version + 1 " +
+            "WHERE user_id = ?)";
+    private static final String QUERY_UPDATE_USER_IF_VERSION = "SELECT version FROM FINAL TABLE (UPDATE users " +
+            "SET user_name = ?, login = ?, email = ?, birthday = ?, version = version + 1 " +
+            "WHERE user_id = ? AND version = ?)";
+    private static final String QUERY_GET_USER_VERSION = "SELECT version FROM users WHERE user_id = ?";
     private static final String QUERY_GET_ALL_USERS = "SELECT * FROM users";
+    private static final String QUERY_GET_USERS_PAGE = "SELECT * FROM users WHERE user_id > ? " +
+            "ORDER BY user_id LIMIT ?";
     private static final String QUERY_GET_USER_BY_ID = "SELECT * FROM users WHERE user_id = ?";
+    private static final String QUERY_GET_USERS_BY_IDS = "SELECT u.* " +
+            "FROM UNNEST(CAST(? AS BIGINT ARRAY)) AS ids(user_id) " +
+            "JOIN users AS u ON u.user_id = ids.user_id";
     private static final String QUERY_DELETE_USER = "DELETE FROM users WHERE user_id = ?";
 
     @Autowired
@@ -48,6 +64,7 @@ public class UserDbStorage implements UserStorage {
             }, keyHolder);
         }
         user.setId(keyHolder.getKey().longValue());
+        user.setVersion(0L);
         log.info("User was created with id {}", user.getId());
         return user;
     }
@@ -55,22 +72,68 @@ public class UserDbStorage implements UserStorage {
     @Override
     public User updateUser(User user) throws ValidationException {
         if(validate(user)) {
-            jdbcTemplate.update(QUERY_UPDATE_USER,
-                    user.getName(),
-                    user.getLogin(),
-                    user.getEmail(),
-                    user.getBirthday(),
-                    user.getId());
+            List<Long> versions = user.getVersion() == null
+                    ? jdbcTemplate.queryForList(QUERY_UPDATE_USER, Long.class,
+                    user.getName(), user.getLogin(), user.getEmail(), user.getBirthday(), user.getId())
+                    : jdbcTemplate.queryForList(QUERY_UPDATE_USER_IF_VERSION, Long.class,
+                    user.getName(), user.getLogin(), user.getEmail(), user.getBirthday(), user.getId(), user.getVersion());
+            if (!versions.isEmpty()) {
+                user.setVersion(versions.get(0));
+            } else if (user.getVersion() == null) {
+                throw new UserNotFoundException(String.format("User with id %d wasn't found", user.getId()));
+            } else {
+                List<Long> current = jdbcTemplate.queryForList(QUERY_GET_USER_VERSION, Long.class, user.getId());
+                if (current.isEmpty()) {
+                    throw new UserNotFoundException(String.format("User with id %d wasn't found", user.getId()));
+                }
+                throw new ConflictException(String.format("User with id %d was updated concurrently: " +
+                        "version %d expected, current version is %d", user.getId(), user.getVersion(), current.get(0)));
+            }
             log.info("User with id {} was updated", user.getId());
         }
         return user;
     }
 
+    /**
+     * Inserts already validated users with one JDBC batch, setting the generated ids on the given objects.
+     */
+    public List<User> createUsers(List<User> users) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            try (PreparedStatement stmt = con.prepareStatement(QUERY_CREATE_USER, new String[]{("user_id")})) {
+                for (User user : users) {
+                    stmt.setString(1, user.getName());
+                    stmt.setString(2, user.getLogin());
+                    stmt.setString(3, user.getEmail());
+                    stmt.setDate(4, Date.valueOf(user.getBirthday()));
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    for (User user : users) {
+                        if (!keys.next()) {
+                            throw new SQLException("Missing generated key for batch insert into users");
+                        }
+                        user.setId(keys.getLong(1));
+                        user.setVersion(0L);
+                    }
+                }
+            }
+            return null;
+        });
+        log.info("{} users were created", users.size());
+        return users;
+    }
+
     @Override
     public List<User> getUsers() {
         return jdbcTemplate.query(QUERY_GET_ALL_USERS, RowTo::mapRowToUser);
     }
 
+    @Override
+    public List<User> getUsers(long after, int limit) {
+        return jdbcTemplate.query(QUERY_GET_USERS_PAGE, RowTo::mapRowToUser, after, limit);
+    }
+
     @Override
     public User findUserById(long id) {
         if(id <= 0) {
@@ -79,12 +142,36 @@ public class UserDbStorage implements UserStorage {
         return jdbcTemplate.queryForObject(QUERY_GET_USER_BY_ID, RowTo::mapRowToUser, id);
     }
 
+    @Override
+    public List<User> findUsersByIds(long[] ids) {
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+        Long[] boxedIds = new Long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            boxedIds[i] = ids[i];
+        }
+        Map<Long, User> usersById = new HashMap<>();
+        jdbcTemplate.query(QUERY_GET_USERS_BY_IDS, resultSet -> {
+            User user = RowTo.mapRowToUser(resultSet, 0);
+            usersById.put(user.getId(), user);
+        }, (Object) boxedIds);
+        List<User> users = new ArrayList<>(usersById.size());
+        for (long id : ids) {
+            User user = usersById.get(id);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
     @Override
     public void deleteUser(long id) {
         jdbcTemplate.update(QUERY_DELETE_USER, id);
     }
 
-    private boolean validate(User user) throws ValidationException {
+    public boolean validate(User user) throws ValidationException {
         if (user.getEmail().isBlank() || !user.getEmail().contains("@")) {
             log.debug("Incorrect email");
             throw new ValidationException("email");
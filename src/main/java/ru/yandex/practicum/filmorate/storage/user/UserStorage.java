@@ -13,7 +13,14 @@ public interface UserStorage {
 
     List<User> getUsers();
 
+    List<User> getUsers(long after, int limit);
+
     User findUserById(long id);
 
+    /**
+     * Returns the users with the given ids in the order of the ids, skipping ids that don't exist.
+     */
+    List<User> findUsersByIds(long[] ids);
+
     void deleteUser(long id);
 }
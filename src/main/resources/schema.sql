@@ -12,24 +12,32 @@ CREATE TABLE IF NOT EXISTS films
  rate INTEGER,
  release_date DATE,
  duration INTEGER,
- mpa_rating_id INTEGER REFERENCES mpa_ratings (mpa_rating_id)
+ mpa_rating_id INTEGER REFERENCES mpa_ratings (mpa_rating_id),
+ likes_count INTEGER DEFAULT 0 NOT NULL,
+ version BIGINT DEFAULT 0 NOT NULL
 );
 
+CREATE INDEX IF NOT EXISTS films_likes_count_idx ON films (likes_count DESC, film_id);
+
 CREATE TABLE IF NOT EXISTS users
 (
     user_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     user_name VARCHAR(60) NOT NULL,
     login VARCHAR(60),
     email VARCHAR(60) NOT NULL,
-    birthday DATE
+    birthday DATE,
+    version BIGINT DEFAULT 0 NOT NULL
 );
 
 CREATE TABLE IF NOT EXISTS film_likes
 (
     film_id BIGINT NOT NULL REFERENCES films (film_id),
-    user_id BIGINT NOT NULL REFERENCES users (user_id)
+    user_id BIGINT NOT NULL REFERENCES users (user_id),
+    PRIMARY KEY (film_id, user_id)
 );
 
+CREATE INDEX IF NOT EXISTS film_likes_user_idx ON film_likes (user_id, film_id);
+
 CREATE TABLE IF NOT EXISTS genres
 (
     genre_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -38,14 +46,19 @@ CREATE TABLE IF NOT EXISTS genres
 
 CREATE TABLE IF NOT EXISTS film_genres
 (
-    film_id INTEGER NOT NULL REFERENCES films (film_id),
+    film_id BIGINT NOT NULL REFERENCES films (film_id),
     genre_id INTEGER NOT NULL REFERENCES genres (genre_id),
     PRIMARY KEY (film_id, genre_id)
 );
 
+CREATE INDEX IF NOT EXISTS film_genres_genre_idx ON film_genres (genre_id, film_id);
+
 CREATE TABLE IF NOT EXISTS friends
 (
     request_user_id BIGINT NOT NULL REFERENCES users (user_id),
     accept_user_id BIGINT NOT NULL REFERENCES users (user_id),
-    is_accepted BOOLEAN
-);
\ No newline at end of file
+    is_accepted BOOLEAN,
+    PRIMARY KEY (request_user_id, accept_user_id)
+);
+
+CREATE INDEX IF NOT EXISTS friends_accept_user_idx ON friends (accept_user_id, request_user_id);
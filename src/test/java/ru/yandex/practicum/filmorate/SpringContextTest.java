@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.service.LikeWriteBehindQueue;
+import ru.yandex.practicum.filmorate.service.RecommendationEngine;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.film.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraphIndex;
+
+/**
+ * Base of the tests that run against the application context. Subclasses that keep this
+ * configuration share one context and one database, so every test starts from empty film, user,
+ * like and friend tables and from in-memory indexes reloaded from them. The genre and MPA rows
+ * of data.sql are kept. A subclass that needs other properties declares its own
+ * {@link SpringBootTest} with its own datasource url, and gets a context of its own.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:filmorate-test;DB_CLOSE_ON_EXIT=FALSE")
+@AutoConfigureMockMvc
+public abstract class SpringContextTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private LikeWriteBehindQueue likeWriteBehindQueue;
+    @Autowired
+    private PopularFilmsIndex popularFilmsIndex;
+    @Autowired
+    private FilmSearchIndex filmSearchIndex;
+    @Autowired
+    private FriendGraphIndex friendGraphIndex;
+    @Autowired
+    private RecommendationEngine recommendationEngine;
+
+    @BeforeEach
+    void cleanDatabase() {
+        likeWriteBehindQueue.flush();
+        jdbcTemplate.update("DELETE FROM film_likes");
+        jdbcTemplate.update("DELETE FROM friends");
+        jdbcTemplate.update("DELETE FROM film_genres");
+        jdbcTemplate.update("DELETE FROM films");
+        jdbcTemplate.update("DELETE FROM users");
+        popularFilmsIndex.load();
+        filmSearchIndex.load();
+        friendGraphIndex.load();
+        recommendationEngine.rebuild();
+    }
+
+    /**
+     * Counts the statements run by the given code through the filmorate.jdbc.query timers of
+     * QueryTimingDataSource. A JDBC batch counts as one statement.
+     */
+    protected long countStatements(Runnable code) {
+        long before = executedStatements();
+        code.run();
+        return executedStatements() - before;
+    }
+
+    private long executedStatements() {
+        return meterRegistry.find("filmorate.jdbc.query").timers().stream().mapToLong(Timer::count).sum();
+    }
+}
@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Valid films and users for tests. Genre and MPA ids refer to the rows of data.sql.
+ */
+public final class TestData {
+
+    private TestData() {
+    }
+
+    public static Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("Description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100L)
+                .mpa(Mpa.builder().id(1).build())
+                .build();
+    }
+
+    /**
+     * The i-th of a series of films that differ in every field, with two genres each.
+     */
+    public static Film film(int i) {
+        return Film.builder()
+                .name("Film " + i)
+                .description("Description " + i)
+                .releaseDate(LocalDate.of(2000, 1, 1).plusDays(i))
+                .duration(90L + i % 60)
+                .mpa(Mpa.builder().id(i % 5 + 1).build())
+                .genres(genres(i % 6 + 1, (i + 1) % 6 + 1))
+                .build();
+    }
+
+    public static List<Film> films(int count) {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            films.add(film(i));
+        }
+        return films;
+    }
+
+    public static LinkedHashSet<Genre> genres(int... ids) {
+        LinkedHashSet<Genre> genres = new LinkedHashSet<>();
+        for (int id : ids) {
+            genres.add(Genre.builder().id(id).build());
+        }
+        return genres;
+    }
+
+    public static User user(String login) {
+        return User.builder()
+                .name(login)
+                .login(login)
+                .email(login + "@mail.ru")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+
+    /**
+     * The i-th of a series of users that differ in every field.
+     */
+    public static User user(int i) {
+        return User.builder()
+                .name("User " + i)
+                .login("user" + i)
+                .email("user" + i + "@mail.ru")
+                .birthday(LocalDate.of(1990, 1, 1).plusDays(i))
+                .build();
+    }
+
+    public static List<User> users(int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(user(i));
+        }
+        return users;
+    }
+}
@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.config;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.filmorate.SpringContextTest;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class CompletedFutureReturnValueHandlerTest extends SpringContextTest {
+
+    private static final String FILM = "{\"name\":\"Film\",\"description\":\"Description\"," +
+            "\"releaseDate\":\"2000-01-01\",\"duration\":100,\"mpa\":{\"id\":1}}";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void readsAreWrittenWithoutAsyncDispatch() throws Exception {
+        String created = mockMvc.perform(post("/films").contentType(MediaType.APPLICATION_JSON).content(FILM))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        long id = JsonPath.<Number>read(created, "$.id").longValue();
+
+        MvcResult film = mockMvc.perform(get("/films/" + id))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Film"))
+                .andExpect(jsonPath("$.mpa.name").value("G"))
+                .andReturn();
+        mockMvc.perform(get("/films/popular"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(id));
+        mockMvc.perform(get("/films/" + id).header(HttpHeaders.IF_NONE_MATCH, film.getResponse().getHeader(HttpHeaders.ETAG)))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/films/" + (id + 1)))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.SpringContextTest;
+
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class FilmControllerTest extends SpringContextTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void popularFilmsCountIsCapped() throws Exception {
+        mockMvc.perform(get("/films/popular").param("count", "1000")).andExpect(status().isOk());
+        mockMvc.perform(get("/films/popular").param("count", "1001")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/popular").param("count", "2000000000")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films/popular").param("count", "0")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void updateOfMissingFilmIsNotFound() throws Exception {
+        mockMvc.perform(put("/films").contentType(MediaType.APPLICATION_JSON).content(film(9999, null)))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(put("/films").contentType(MediaType.APPLICATION_JSON).content(film(9999, 0L)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void updateOfStaleVersionIsConflict() throws Exception {
+        long id = createFilm();
+
+        mockMvc.perform(put("/films").contentType(MediaType.APPLICATION_JSON).content(film(id, 0L)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(1));
+        mockMvc.perform(put("/films").contentType(MediaType.APPLICATION_JSON).content(film(id, 0L)))
+                .andExpect(status().isConflict());
+        mockMvc.perform(put("/films").contentType(MediaType.APPLICATION_JSON).content(film(id, null)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void bulkFetchKeepsRequestOrderAndReportsMissingIds() throws Exception {
+        long first = createFilm();
+        long second = createFilm();
+
+        mockMvc.perform(get("/films").param("ids", second + ",999999," + first + "," + second))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id").value(contains((int) second, (int) first)))
+                .andExpect(jsonPath("$.missingIds").value(contains(999999)));
+        String tooMany = LongStream.rangeClosed(1, 1001).mapToObj(Long::toString).collect(Collectors.joining(","));
+        mockMvc.perform(get("/films").param("ids", tooMany)).andExpect(status().isBadRequest());
+    }
+
+    private long createFilm() throws Exception {
+        String created = mockMvc.perform(post("/films").contentType(MediaType.APPLICATION_JSON).content(film(0, null)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return JsonPath.<Number>read(created, "$.id").longValue();
+    }
+
+    private static String film(long id, Long version) {
+        return "{\"id\":" + id + ",\"name\":\"Film\",\"description\":\"Description\","
+                + "\"releaseDate\":\"2000-01-01\",\"duration\":100,\"mpa\":{\"id\":1}"
+                + (version == null ? "" : ",\"version\":" + version) + "}";
+    }
+}
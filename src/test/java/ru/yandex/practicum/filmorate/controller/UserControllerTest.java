@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.SpringContextTest;
+
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class UserControllerTest extends SpringContextTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void updateOfMissingUserIsNotFound() throws Exception {
+        mockMvc.perform(put("/users").contentType(MediaType.APPLICATION_JSON).content(user(9999, null)))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(put("/users").contentType(MediaType.APPLICATION_JSON).content(user(9999, 0L)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void updateOfStaleVersionIsConflict() throws Exception {
+        long id = createUser();
+
+        mockMvc.perform(put("/users").contentType(MediaType.APPLICATION_JSON).content(user(id, 0L)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(1));
+        mockMvc.perform(put("/users").contentType(MediaType.APPLICATION_JSON).content(user(id, 0L)))
+                .andExpect(status().isConflict());
+        mockMvc.perform(put("/users").contentType(MediaType.APPLICATION_JSON).content(user(id, null)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void bulkFetchKeepsRequestOrderAndReportsMissingIds() throws Exception {
+        long first = createUser();
+        long second = createUser();
+
+        mockMvc.perform(get("/users").param("ids", second + ",999999," + first + "," + second))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id").value(contains((int) second, (int) first)))
+                .andExpect(jsonPath("$.missingIds").value(contains(999999)));
+        String tooMany = LongStream.rangeClosed(1, 1001).mapToObj(Long::toString).collect(Collectors.joining(","));
+        mockMvc.perform(get("/users").param("ids", tooMany)).andExpect(status().isBadRequest());
+    }
+
+    private long createUser() throws Exception {
+        String created = mockMvc.perform(post("/users").contentType(MediaType.APPLICATION_JSON).content(user(0, null)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return JsonPath.<Number>read(created, "$.id").longValue();
+    }
+
+    private static String user(long id, Long version) {
+        return "{\"id\":" + id + ",\"login\":\"login\",\"name\":\"Name\",\"email\":\"user@mail.ru\","
+                + "\"birthday\":\"1990-01-01\"" + (version == null ? "" : ",\"version\":" + version) + "}";
+    }
+}
@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.SpringContextTest;
+import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.model.User;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.user;
+
+/**
+ * Likes and friendships are written without looking the film and users up first: the foreign
+ * keys and the affected-row counts tell a missing film or user apart, and only then is it looked up.
+ */
+class LikeAndFriendMutationTest extends SpringContextTest {
+
+    private static final long MISSING_ID = 999_999;
+
+    @Autowired
+    private FilmDaoService filmService;
+    @Autowired
+    private UserDaoService userService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void likeAndUnlikeRunNoExistenceLookups() {
+        long filmId = filmService.createFilm(film("Film")).getId();
+        long userId = userService.createUser(user("liker")).getId();
+
+        assertThat(countStatements(() -> filmService.addLike(filmId, userId))).isEqualTo(2);
+        filmService.addLike(filmId, userId);
+        assertThat(likes(filmId)).isEqualTo(1);
+        assertThat(likesCount(filmId)).isEqualTo(1);
+
+        assertThat(countStatements(() -> filmService.deleteLike(filmId, userId))).isEqualTo(2);
+        assertThat(likes(filmId)).isZero();
+        assertThat(likesCount(filmId)).isZero();
+    }
+
+    @Test
+    void likeOfMissingFilmOrUserIsNotFound() {
+        long filmId = filmService.createFilm(film("Film")).getId();
+        long userId = userService.createUser(user("fan")).getId();
+
+        assertThatThrownBy(() -> filmService.addLike(MISSING_ID, userId)).isInstanceOf(FilmNotFoundException.class);
+        assertThatThrownBy(() -> filmService.addLike(filmId, MISSING_ID)).isInstanceOf(UserNotFoundException.class);
+        assertThatThrownBy(() -> filmService.deleteLike(MISSING_ID, userId)).isInstanceOf(FilmNotFoundException.class);
+        assertThatThrownBy(() -> filmService.deleteLike(filmId, MISSING_ID)).isInstanceOf(UserNotFoundException.class);
+    }
+
+    @Test
+    void friendWritesRunNoExistenceLookups() {
+        long userId = userService.createUser(user("befriender")).getId();
+        long friendId = userService.createUser(user("befriended")).getId();
+
+        assertThat(countStatements(() -> userService.addFriend(userId, friendId))).isEqualTo(1);
+        userService.addFriend(userId, friendId);
+        assertThat(userService.getFriends(userId)).extracting(User::getId).containsExactly(friendId);
+
+        assertThat(countStatements(() -> userService.deleteFriend(userId, friendId))).isEqualTo(1);
+        assertThat(userService.getFriends(userId)).isEmpty();
+    }
+
+    @Test
+    void friendOfMissingUserIsNotFound() {
+        long userId = userService.createUser(user("loner")).getId();
+        long otherId = userService.createUser(user("stranger")).getId();
+
+        assertThatThrownBy(() -> userService.addFriend(MISSING_ID, userId)).isInstanceOf(UserNotFoundException.class);
+        assertThatThrownBy(() -> userService.addFriend(userId, MISSING_ID)).isInstanceOf(UserNotFoundException.class);
+        assertThatThrownBy(() -> userService.deleteFriend(MISSING_ID, userId)).isInstanceOf(UserNotFoundException.class);
+        assertThatThrownBy(() -> userService.deleteFriend(userId, otherId)).isInstanceOf(UserNotFoundException.class);
+    }
+
+    private int likes(long filmId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM film_likes WHERE film_id = ?", Integer.class, filmId);
+    }
+
+    private int likesCount(long filmId) {
+        return jdbcTemplate.queryForObject("SELECT likes_count FROM films WHERE film_id = ?", Integer.class, filmId);
+    }
+}
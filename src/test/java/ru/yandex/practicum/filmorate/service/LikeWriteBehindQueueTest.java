@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.SpringContextTest;
+import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.user;
+
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:filmorate-test-write-behind;DB_CLOSE_ON_EXIT=FALSE",
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.flush-interval-ms=3600000"})
+class LikeWriteBehindQueueTest extends SpringContextTest {
+
+    private static final String QUERY_COUNT_LIKES = "SELECT COUNT(*) FROM film_likes WHERE film_id = ? AND user_id = ?";
+
+    @Autowired
+    private FilmDaoService filmService;
+    @Autowired
+    private UserDaoService userService;
+    @Autowired
+    private LikeWriteBehindQueue queue;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void readsFlushOnlyTheReadingUsersLikes() {
+        Film film = filmService.createFilm(film("Film"));
+        User first = userService.createUser(user("first"));
+        User second = userService.createUser(user("second"));
+        filmService.addLike(film.getId(), first.getId());
+        filmService.addLike(film.getId(), second.getId());
+
+        filmService.getPopularFilms(10, null, null, null, null);
+        assertThat(likes(film, first)).isZero();
+
+        filmService.getRecommendations(first.getId(), 10);
+        assertThat(likes(film, first)).isEqualTo(1);
+        assertThat(likes(film, second)).isZero();
+
+        queue.flush();
+        assertThat(likes(film, second)).isEqualTo(1);
+    }
+
+    @Test
+    void likesOfDeletedFilmsAndUsersAreRejected() {
+        Film film = filmService.createFilm(film("Film"));
+        User user = userService.createUser(user("deleted"));
+        filmService.addLike(film.getId(), user.getId());
+        filmService.deleteLike(film.getId(), user.getId());
+
+        userService.deleteUser(user.getId());
+        assertThatThrownBy(() -> filmService.addLike(film.getId(), user.getId()))
+                .isInstanceOf(UserNotFoundException.class);
+
+        User other = userService.createUser(user("other"));
+        filmService.deleteFilm(film.getId());
+        assertThatThrownBy(() -> filmService.addLike(film.getId(), other.getId()))
+                .isInstanceOf(FilmNotFoundException.class);
+        queue.flush();
+    }
+
+    @Test
+    void likesCountRebuildSurvivesARejectedBatch() {
+        Film film = filmService.createFilm(film("Film"));
+        User kept = userService.createUser(user("kept"));
+        User gone = userService.createUser(user("gone"));
+        filmService.addLike(film.getId(), kept.getId());
+        filmService.addLike(film.getId(), gone.getId());
+        // behind the queue's back, so the batch breaks the film_likes foreign key
+        jdbcTemplate.update("DELETE FROM users WHERE user_id = ?", gone.getId());
+
+        filmService.rebuildLikesCount();
+
+        assertThat(likes(film, kept)).isEqualTo(1);
+        assertThat(filmService.findInconsistentLikesCount()).isEmpty();
+    }
+
+    private int likes(Film film, User user) {
+        return jdbcTemplate.queryForObject(QUERY_COUNT_LIKES, Integer.class, film.getId(), user.getId());
+    }
+}
@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.SpringContextTest;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.PopularFilmsIndex;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.user;
+
+class LikesCountConsistencyCheckTest extends SpringContextTest {
+
+    @Autowired
+    private LikesCountConsistencyCheck consistencyCheck;
+    @Autowired
+    private FilmDaoService filmService;
+    @Autowired
+    private UserDaoService userService;
+    @Autowired
+    private PopularFilmsIndex popularFilmsIndex;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void driftedLikesCountIsRebuilt() {
+        Film film = filmService.createFilm(film("Film"));
+        for (int i = 0; i < 3; i++) {
+            User user = userService.createUser(user(i));
+            filmService.addLike(film.getId(), user.getId());
+        }
+        assertThat(consistencyCheck.check()).isZero();
+
+        jdbcTemplate.update("UPDATE films SET likes_count = 10 WHERE film_id = ?", film.getId());
+
+        assertThat(filmService.findInconsistentLikesCount()).containsExactly(film.getId());
+        assertThat(consistencyCheck.check()).isEqualTo(1);
+        assertThat(filmService.findInconsistentLikesCount()).isEmpty();
+        assertThat(jdbcTemplate.queryForObject("SELECT likes_count FROM films WHERE film_id = ?", Integer.class,
+                film.getId())).isEqualTo(3);
+        assertThat(popularFilmsIndex.getLikes(film.getId())).isEqualTo(3);
+    }
+}
@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.h2.tools.SimpleResultSet;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.SQLException;
+import java.sql.Types;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RecommendationEngineTest {
+
+    @Test
+    void likeCommittedDuringRebuildIsKept() {
+        FilmLikesTable table = new FilmLikesTable();
+        RecommendationEngine engine = new RecommendationEngine(table, 0);
+        table.duringQuery = () -> engine.addLike(2, 2);
+
+        engine.rebuild();
+
+        assertThat(engine.recommend(1, 10)).containsExactly(2L);
+    }
+
+    @Test
+    void failedRebuildKeepsTheCurrentMatrix() {
+        FilmLikesTable table = new FilmLikesTable();
+        RecommendationEngine engine = new RecommendationEngine(table, 0);
+        engine.rebuild();
+        engine.addLike(2, 2);
+        table.duringQuery = () -> {
+            throw new DataAccessResourceFailureException("connection lost");
+        };
+
+        assertThatThrownBy(engine::rebuild).isInstanceOf(DataAccessResourceFailureException.class);
+
+        assertThat(engine.recommend(1, 10)).containsExactly(2L);
+    }
+
+    /**
+     * film_likes where users 1 and 2 both like film 1. Runs {@link #duringQuery} while the rows are read.
+     */
+    private static final class FilmLikesTable extends JdbcTemplate {
+        private Runnable duringQuery = () -> {
+        };
+
+        @Override
+        public void query(String sql, RowCallbackHandler handler) {
+            SimpleResultSet rows = new SimpleResultSet();
+            rows.addColumn("film_id", Types.BIGINT, 19, 0);
+            rows.addColumn("user_id", Types.BIGINT, 19, 0);
+            rows.addRow(1L, 1L);
+            rows.addRow(1L, 2L);
+            try {
+                while (rows.next()) {
+                    handler.processRow(rows);
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            duringQuery.run();
+        }
+    }
+}
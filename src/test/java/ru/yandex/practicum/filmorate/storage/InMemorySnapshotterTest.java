@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.TestData;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InMemorySnapshotterTest {
+
+    // more than one chunk of each
+    private static final int FILMS = 5000;
+    private static final int USERS = 5000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void snapshotIsLoadedIntoEmptyStorages() {
+        InMemoryFilmStorage films = new InMemoryFilmStorage();
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        for (int i = 1; i <= USERS; i++) {
+            users.createUser(user(i));
+        }
+        for (int i = 1; i <= FILMS; i++) {
+            films.createFilm(film(i));
+        }
+        films.deleteFilm(1);
+        snapshotter(films, users).snapshot();
+
+        InMemoryFilmStorage loadedFilms = new InMemoryFilmStorage();
+        InMemoryUserStorage loadedUsers = new InMemoryUserStorage();
+        snapshotter(loadedFilms, loadedUsers).load();
+
+        assertThat(loadedFilms.getFilms()).isEqualTo(films.getFilms());
+        assertThat(loadedUsers.getUsers()).isEqualTo(users.getUsers());
+        assertThat(loadedFilms.createFilm(film(1)).getId()).isEqualTo(FILMS + 1);
+        assertThat(loadedUsers.createUser(user(1)).getId()).isEqualTo(USERS + 1);
+    }
+
+    @Test
+    void missingSnapshotLeavesStoragesEmpty() {
+        InMemoryFilmStorage films = new InMemoryFilmStorage();
+        InMemoryUserStorage users = new InMemoryUserStorage();
+
+        snapshotter(films, users).load();
+
+        assertThat(films.getFilms()).isEmpty();
+        assertThat(users.getUsers()).isEmpty();
+    }
+
+    @Test
+    void corruptSnapshotStopsTheLoad() throws IOException {
+        InMemoryFilmStorage films = new InMemoryFilmStorage();
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        films.createFilm(film(1));
+        snapshotter(films, users).snapshot();
+        byte[] bytes = Files.readAllBytes(snapshotFile());
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(snapshotFile(), bytes);
+
+        assertThatThrownBy(() -> snapshotter(new InMemoryFilmStorage(), new InMemoryUserStorage()).load())
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private InMemorySnapshotter snapshotter(InMemoryFilmStorage films, InMemoryUserStorage users) {
+        return new InMemorySnapshotter(films, users, snapshotFile().toString(), 0);
+    }
+
+    private Path snapshotFile() {
+        return directory.resolve("in-memory.snapshot");
+    }
+
+    private static Film film(int i) {
+        Film film = TestData.film(i);
+        film.setRate(i % 10);
+        film.setMpa(i % 7 == 0 ? null : Mpa.builder().id(i % 5 + 1).name("Mpa " + (i % 5 + 1)).build());
+        film.setGenres(i % 3 == 0 ? null : film.getGenres());
+        film.setLikes(new LinkedHashSet<>(List.of((long) i % USERS + 1, (long) (i * 7) % USERS + 1)));
+        return film;
+    }
+
+    private static User user(int i) {
+        User user = TestData.user(i);
+        user.setFriends(new LinkedHashSet<>(List.of((long) i % USERS + 1)));
+        return user;
+    }
+}
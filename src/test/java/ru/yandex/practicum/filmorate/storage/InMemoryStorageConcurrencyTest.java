@@ -0,0 +1,157 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.user;
+
+/**
+ * Hammers the in-memory storages from several threads at once and checks that no film, user,
+ * like or friendship written concurrently gets lost.
+ */
+class InMemoryStorageConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int FILMS = 50;
+    private static final int USERS = 400;
+
+    private final InMemoryUserStorage userStorage = new InMemoryUserStorage();
+    private final InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+    private final UserService userService = new UserService(userStorage);
+    private final FilmService filmService = new FilmService(filmStorage, userStorage);
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void concurrentCreatesGetDistinctIds() throws Exception {
+        runConcurrently(thread -> {
+            for (int i = 0; i < 1000; i++) {
+                filmService.createFilm(film("Film " + thread + "-" + i));
+                userService.createUser(user("user" + thread + "-" + i));
+            }
+        });
+
+        Set<Long> filmIds = new HashSet<>();
+        filmService.getFilms().forEach(film -> filmIds.add(film.getId()));
+        Set<Long> userIds = new HashSet<>();
+        userService.getUsers().forEach(user -> userIds.add(user.getId()));
+        assertThat(filmIds).hasSize(THREADS * 1000);
+        assertThat(userIds).hasSize(THREADS * 1000);
+    }
+
+    @Test
+    void concurrentLikesAndUpdatesLoseNoLike() throws Exception {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < FILMS; i++) {
+            films.add(filmService.createFilm(film("Film " + i)));
+        }
+        List<User> users = createUsers();
+
+        runConcurrently(thread -> {
+            for (int u = thread; u < USERS; u += THREADS) {
+                for (Film film : films) {
+                    filmService.addLike(film.getId(), users.get(u).getId());
+                }
+                Film updated = film("Film " + u + " updated");
+                updated.setId(films.get(u % FILMS).getId());
+                filmService.updateFilm(updated);
+            }
+        });
+
+        for (Film film : films) {
+            assertThat(filmService.findFilmById(film.getId()).getLikes()).hasSize(USERS);
+        }
+
+        runConcurrently(thread -> {
+            for (int u = thread; u < USERS; u += THREADS) {
+                if (u % 2 == 0) {
+                    for (Film film : films) {
+                        filmService.deleteLike(film.getId(), users.get(u).getId());
+                    }
+                }
+            }
+        });
+
+        for (Film film : films) {
+            assertThat(filmService.findFilmById(film.getId()).getLikes()).hasSize(USERS / 2);
+        }
+    }
+
+    @Test
+    void concurrentFriendshipsStaySymmetric() throws Exception {
+        List<User> users = createUsers();
+
+        runConcurrently(thread -> {
+            for (int u = thread; u < USERS; u += THREADS) {
+                for (int friend = 0; friend < USERS; friend++) {
+                    if (friend != u && (u + friend) % 3 == 0) {
+                        userService.addFriend(users.get(u).getId(), users.get(friend).getId());
+                    }
+                }
+                User updated = user("user" + u + "-updated");
+                updated.setId(users.get(u).getId());
+                userService.updateUser(updated);
+            }
+        });
+
+        for (int u = 0; u < USERS; u++) {
+            Set<Long> friends = userService.findUserById(users.get(u).getId()).getFriends();
+            for (int friend = 0; friend < USERS; friend++) {
+                boolean expected = friend != u && (u + friend) % 3 == 0;
+                assertThat(friends.contains(users.get(friend).getId())).isEqualTo(expected);
+            }
+        }
+    }
+
+    private List<User> createUsers() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            users.add(userService.createUser(user("user" + i)));
+        }
+        return users;
+    }
+
+    private void runConcurrently(Task task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            int number = thread;
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run(number);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+    }
+
+    private interface Task {
+        void run(int thread) throws Exception;
+    }
+}
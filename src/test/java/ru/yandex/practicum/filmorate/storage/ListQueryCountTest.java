@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.yandex.practicum.filmorate.SpringContextTest;
+import ru.yandex.practicum.filmorate.service.FilmDaoService;
+import ru.yandex.practicum.filmorate.service.UserDaoService;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.TestData.films;
+import static ru.yandex.practicum.filmorate.TestData.users;
+
+/**
+ * Counts the statements the list reads execute, through the filmorate.jdbc.query timers of
+ * QueryTimingDataSource, so that a per-row query can't sneak back into film assembly.
+ */
+class ListQueryCountTest extends SpringContextTest {
+
+    @Autowired
+    private FilmDbStorage filmStorage;
+    @Autowired
+    private UserDbStorage userStorage;
+    @Autowired
+    private FilmDaoService filmService;
+    @Autowired
+    private UserDaoService userService;
+
+    @Test
+    void listReadsRunTheSameNumberOfStatementsForOneAndAHundredRows() {
+        filmStorage.createFilms(films(1));
+        userStorage.createUsers(users(1));
+        long filmsOfOne = countStatements(() -> filmService.getFilms());
+        long usersOfOne = countStatements(() -> userService.getUsers());
+        long popularOfOne = countStatements(() -> filmService.getPopularFilms(100, null, null, null, null));
+
+        filmStorage.createFilms(films(99));
+        userStorage.createUsers(users(99));
+        assertThat(filmService.getFilms()).hasSize(100);
+        assertThat(userService.getUsers()).hasSize(100);
+
+        assertThat(filmsOfOne).isEqualTo(2);
+        assertThat(usersOfOne).isEqualTo(1);
+        assertThat(popularOfOne).isEqualTo(2);
+        assertThat(countStatements(() -> filmService.getFilms())).isEqualTo(filmsOfOne);
+        assertThat(countStatements(() -> userService.getUsers())).isEqualTo(usersOfOne);
+        assertThat(countStatements(() -> filmService.getPopularFilms(100, null, null, null, null))).isEqualTo(popularOfOne);
+    }
+}
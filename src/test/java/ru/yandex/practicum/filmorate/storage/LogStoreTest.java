@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogStoreTest {
+
+    private static final int SEGMENT_SIZE = 128;
+    private static final byte[] VALUE = new byte[10];
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void removedHighestKeyIsRememberedAfterReopen() {
+        try (LogStore store = open()) {
+            store.put(1, 0, VALUE);
+            store.put(2, 0, VALUE);
+            store.remove(2, 0);
+            assertThat(store.highestKey()).isEqualTo(2);
+        }
+
+        try (LogStore store = open()) {
+            assertThat(store.contains(2, 0)).isFalse();
+            assertThat(store.highestKey()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void removedHighestKeyIsRememberedAfterCompaction() {
+        try (LogStore store = open()) {
+            store.put(1, 0, VALUE);
+            store.put(2, 0, VALUE);
+            store.remove(2, 0);
+            // seals the first segment, whose records are all garbage now
+            store.put(1, 0, VALUE);
+            store.compact(0.5);
+            assertThat(store.garbageRatio()).isZero();
+        }
+
+        try (LogStore store = open()) {
+            assertThat(store.contains(1, 0)).isTrue();
+            assertThat(store.contains(2, 0)).isFalse();
+            assertThat(store.highestKey()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void removedKeyStaysRemovedAcrossReopensAndCompactions() {
+        try (LogStore store = open()) {
+            store.put(1, 0, VALUE);
+            store.put(2, 0, VALUE);
+            // seals the first segment, half of it garbage now; its merged copy gets a higher id than the active one
+            store.put(2, 0, VALUE);
+            store.compact(0.5);
+            store.remove(1, 0);
+        }
+
+        try (LogStore store = open()) {
+            assertThat(store.contains(1, 0)).isFalse();
+            store.compact(0.1);
+        }
+
+        try (LogStore store = open()) {
+            assertThat(store.contains(1, 0)).isFalse();
+            assertThat(store.contains(2, 0)).isTrue();
+            store.compact(0.1);
+        }
+
+        try (LogStore store = open()) {
+            assertThat(store.contains(1, 0)).isFalse();
+            assertThat(store.contains(2, 0)).isTrue();
+        }
+    }
+
+    private LogStore open() {
+        return new LogStore(directory, "films", SEGMENT_SIZE, false);
+    }
+}
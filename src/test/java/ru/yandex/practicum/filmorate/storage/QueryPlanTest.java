@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.filmorate.SpringContextTest;
+import ru.yandex.practicum.filmorate.mapRow.FilmAssembler;
+import ru.yandex.practicum.filmorate.service.FilmDaoService;
+import ru.yandex.practicum.filmorate.service.LikeWriteBehindQueue;
+import ru.yandex.practicum.filmorate.service.UserDaoService;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraphIndex;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks with EXPLAIN that H2 answers the like, friend and genre queries the application runs
+ * from the keys and indexes declared in schema.sql instead of scanning the tables. The SQL is
+ * read from the private QUERY_ constants of the classes that execute it.
+ */
+class QueryPlanTest extends SpringContextTest {
+
+    private static final String TABLE_SCAN = "tableScan";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void likeWritesUseTheFilmLikesAndFilmsKeys() {
+        assertThat(plan(FilmDaoService.class, "QUERY_DELETE_FROM_FILM")).contains("FILM_ID = ?1")
+                .doesNotContain(TABLE_SCAN);
+        assertThat(plan(FilmDaoService.class, "QUERY_CHANGE_LIKES_COUNT")).contains("PRIMARY_KEY")
+                .contains("FILM_ID = ?2").doesNotContain(TABLE_SCAN);
+        assertThat(plan(FilmDaoService.class, "QUERY_REBUILD_LIKES_COUNT"))
+                .contains("FILM_ID = F.FILM_ID").doesNotContain(TABLE_SCAN);
+        assertThat(plan(LikeWriteBehindQueue.class, "QUERY_ADD_LIKE_IF_ABSENT")).contains("FILM_ID = ?3")
+                .doesNotContain(TABLE_SCAN);
+        assertThat(plan(LikeWriteBehindQueue.class, "QUERY_DELETE_LIKE")).contains("FILM_ID = ?1")
+                .doesNotContain(TABLE_SCAN);
+    }
+
+    @Test
+    void filmAndUserLookupsUseThePrimaryKeys() {
+        assertThat(plan(FilmDbStorage.class, "QUERY_DELETE_FILM")).contains("PRIMARY_KEY")
+                .contains("FILM_ID = ?1").doesNotContain(TABLE_SCAN);
+        assertThat(plan(FilmDaoService.class, "QUERY_FILM_EXISTS")).contains("FILM_ID = ?1")
+                .doesNotContain(TABLE_SCAN);
+        assertThat(plan(FilmDaoService.class, "QUERY_USER_EXISTS")).contains("USER_ID = ?1")
+                .doesNotContain(TABLE_SCAN);
+    }
+
+    @Test
+    void popularFilmsAreReadByPrimaryKey() {
+        assertThat(plan(FilmDbStorage.class, "QUERY_GET_FILMS_BY_IDS")).contains("PRIMARY_KEY")
+                .contains("FILM_ID = IDS.FILM_ID").doesNotContain(TABLE_SCAN);
+        assertThat(plan(FilmAssembler.class, "QUERY_GET_GENRE_IDS_BY_FILM_IDS"))
+                .contains("FILM_ID = IDS.FILM_ID").doesNotContain(TABLE_SCAN);
+    }
+
+    @Test
+    void friendWritesUseTheFriendsKeys() {
+        assertThat(plan(UserDaoService.class, "QUERY_DELETE_FRIEND")).contains("REQUEST_USER_ID = ?1")
+                .doesNotContain(TABLE_SCAN);
+    }
+
+    @Test
+    void genreWritesUseTheFilmGenresKeys() {
+        assertThat(plan(FilmDbStorage.class, "QUERY_GET_FILM_GENRE_IDS")).contains("FILM_ID = ?1")
+                .doesNotContain(TABLE_SCAN);
+        assertThat(plan(FilmDbStorage.class, "QUERY_DELETE_GENRE_FROM_FILM")).contains("FILM_ID = ?1")
+                .doesNotContain(TABLE_SCAN);
+    }
+
+    /**
+     * The in-memory indexes load whole tables, so these are full reads: friends and film_genres
+     * are read from their primary keys, films rank rows need columns no index covers.
+     */
+    @Test
+    void indexLoadsReadEachTableOnce() {
+        assertThat(plan(FriendGraphIndex.class, "QUERY_GET_ALL_FRIEND_EDGES")).contains("FRIENDS")
+                .doesNotContain(TABLE_SCAN).doesNotContain("JOIN");
+        assertThat(plan(PopularFilmsIndex.class, "QUERY_GET_FILM_GENRES")).contains("FILM_GENRES")
+                .doesNotContain(TABLE_SCAN).doesNotContain("JOIN");
+        assertThat(plan(PopularFilmsIndex.class, "QUERY_GET_FILM_RANKS")).contains("FILMS")
+                .doesNotContain("JOIN");
+    }
+
+    /**
+     * The reverse indexes from schema.sql serve lookups by the second column of each composite key.
+     */
+    @Test
+    void reverseLookupsUseTheReverseIndexes() {
+        assertThat(plan("SELECT film_id FROM film_likes WHERE user_id = ?"))
+                .contains("FILM_LIKES_USER_IDX: USER_ID = ?1");
+        assertThat(plan("SELECT request_user_id FROM friends WHERE accept_user_id = ?"))
+                .contains("FRIENDS_ACCEPT_USER_IDX: ACCEPT_USER_ID = ?1");
+        assertThat(plan("SELECT film_id FROM film_genres WHERE genre_id = ?"))
+                .contains("FILM_GENRES_GENRE_IDX: GENRE_ID = ?1");
+    }
+
+    private String plan(Class<?> owner, String constant) {
+        return plan((String) ReflectionTestUtils.getField(owner, constant));
+    }
+
+    private String plan(String sql) {
+        Object[] parameters = new Object[sql.length() - sql.replace("?", "").length()];
+        Arrays.fill(parameters, 1L);
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, parameters);
+    }
+}
@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.SpringContextTest;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.genres;
+
+/**
+ * Counts the statements a film write runs for its genres: film_genres is written as a diff in
+ * at most two JDBC batches, so the count doesn't grow with the number of genres.
+ */
+class FilmGenresStatementCountTest extends SpringContextTest {
+
+    @Autowired
+    private FilmDbStorage filmStorage;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void genreWritesRunTheSameNumberOfStatementsForOneAndThreeGenres() {
+        Film one = film("One");
+        one.setGenres(genres(1));
+        Film three = film("Three");
+        three.setGenres(genres(1, 2, 3));
+        assertThat(countStatements(() -> filmStorage.createFilm(one))).isEqualTo(2);
+        assertThat(countStatements(() -> filmStorage.createFilm(three))).isEqualTo(2);
+
+        assertThat(countUpdate(one, 4)).isEqualTo(4);
+        assertThat(countUpdate(three, 4, 5, 6)).isEqualTo(4);
+        assertThat(genreIds(three)).containsExactlyInAnyOrder(4, 5, 6);
+
+        assertThat(countUpdate(three, 4, 5)).isEqualTo(3);
+        assertThat(countUpdate(three, 4, 5)).isEqualTo(2);
+        assertThat(genreIds(three)).containsExactlyInAnyOrder(4, 5);
+    }
+
+    private long countUpdate(Film film, int... genreIds) {
+        Film updated = film(film.getName());
+        updated.setId(film.getId());
+        updated.setGenres(genres(genreIds));
+        return countStatements(() -> filmStorage.updateFilm(updated));
+    }
+
+    private List<Integer> genreIds(Film film) {
+        return jdbcTemplate.queryForList("SELECT genre_id FROM film_genres WHERE film_id = ?", Integer.class,
+                film.getId());
+    }
+}
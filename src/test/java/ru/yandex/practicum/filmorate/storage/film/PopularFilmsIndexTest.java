@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.h2.tools.SimpleResultSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PopularFilmsIndexTest {
+
+    private static final int FILMS = 200;
+
+    private final PopularFilmsIndex index = new PopularFilmsIndex(null);
+
+    @BeforeEach
+    void fill() {
+        for (long filmId = 1; filmId <= FILMS; filmId++) {
+            index.putFilm(filmId, (int) (1 + filmId % 5), List.of((int) (1 + filmId % 6)), 1950 + (int) (filmId % 50));
+            index.changeLikes(filmId, (int) (filmId % 10));
+        }
+    }
+
+    @Test
+    void countLargerThanTheIndexReturnsEveryMatchingFilm() {
+        long[] ids = index.getPopularFilmIds(Integer.MAX_VALUE, null, null, null, null);
+
+        assertThat(ids).hasSize(FILMS);
+        for (int i = 1; i < ids.length; i++) {
+            int previous = index.getLikes(ids[i - 1]);
+            int current = index.getLikes(ids[i]);
+            assertThat(previous > current || previous == current && ids[i - 1] < ids[i]).isTrue();
+        }
+    }
+
+    @Test
+    void topFilmsAreTheMostLikedMatchingTheFilters() {
+        assertThat(index.getPopularFilmIds(3, null, null, null, null)).containsExactly(9, 19, 29);
+        assertThat(LongStream.of(index.getPopularFilmIds(100, 2, null, null, null)))
+                .hasSize(34)
+                .allMatch(id -> id % 6 == 1);
+        assertThat(LongStream.of(index.getPopularFilmIds(Integer.MAX_VALUE, null, 1, 1990, 1999)))
+                .isNotEmpty()
+                .allMatch(id -> id % 5 == 0 && id % 50 >= 40);
+    }
+
+    @Test
+    void readersKeepTheCurrentRankingAndNoLikeIsLostDuringReload() {
+        FilmsTable table = new FilmsTable();
+        PopularFilmsIndex reloaded = new PopularFilmsIndex(table);
+        reloaded.load();
+        table.duringRead = () -> {
+            assertThat(reloaded.getPopularFilmIds(10, null, null, null, null)).containsExactly(2, 1);
+            reloaded.changeLikes(1, 5);
+        };
+
+        reloaded.load();
+
+        assertThat(reloaded.getPopularFilmIds(10, null, null, null, null)).containsExactly(1, 2);
+        assertThat(reloaded.getLikes(1)).isEqualTo(6);
+    }
+
+    /**
+     * films with film 1 liked once and film 2 twice, and no film_genres. Runs {@link #duringRead}
+     * after the films are read.
+     */
+    private static final class FilmsTable extends JdbcTemplate {
+        private Runnable duringRead = () -> {
+        };
+
+        @Override
+        public void query(String sql, RowCallbackHandler handler) {
+            SimpleResultSet rows = new SimpleResultSet();
+            if (sql.contains("likes_count")) {
+                rows.addColumn("film_id", Types.BIGINT, 19, 0);
+                rows.addColumn("likes_count", Types.INTEGER, 10, 0);
+                rows.addColumn("mpa_rating_id", Types.INTEGER, 10, 0);
+                rows.addColumn("release_date", Types.DATE, 10, 0);
+                rows.addRow(1L, 1, 1, Date.valueOf("2000-01-01"));
+                rows.addRow(2L, 2, 1, Date.valueOf("2000-01-01"));
+            }
+            try {
+                while (rows.next()) {
+                    handler.processRow(rows);
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            if (sql.contains("likes_count")) {
+                duringRead.run();
+            }
+        }
+    }
+}
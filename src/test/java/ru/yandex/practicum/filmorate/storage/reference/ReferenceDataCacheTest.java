@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.storage.reference;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.SpringContextTest;
+import ru.yandex.practicum.filmorate.storage.ResourceVersions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReferenceDataCacheTest extends SpringContextTest {
+
+    @Autowired
+    private ReferenceDataCache cache;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    @AfterEach
+    void removeAddedGenre() {
+        jdbcTemplate.update("DELETE FROM genres WHERE genre_id = 7");
+        cache.invalidate();
+    }
+
+    @Test
+    void lookupsAreCountedInTheRegistry() {
+        double hits = counted("hit");
+        double misses = counted("miss");
+
+        assertThat(cache.findMpaById(1).getName()).isEqualTo("G");
+        assertThat(cache.findGenreById(1000)).isNull();
+
+        assertThat(counted("hit")).isEqualTo(hits + 1);
+        assertThat(counted("miss")).isEqualTo(misses + 1);
+    }
+
+    @Test
+    void unknownIdIsLookedUpOnceUntilTheTableIsReloaded() {
+        long misses = cache.getMisses();
+
+        assertThat(cache.findGenreById(7)).isNull();
+        assertThat(cache.findGenreById(7)).isNull();
+        assertThat(cache.getMisses()).isEqualTo(misses + 1);
+
+        jdbcTemplate.update("INSERT INTO genres (genre_id, genre_name) VALUES (7, 'Вестерн')");
+        cache.invalidate();
+
+        assertThat(cache.findGenreById(7).getName()).isEqualTo("Вестерн");
+        assertThat(cache.getMisses()).isEqualTo(misses + 1);
+    }
+
+    @Test
+    void reloadChangesTheReferenceDataTag() {
+        String tag = resourceVersions.referenceDataTag();
+        assertThat(resourceVersions.referenceDataTag()).isEqualTo(tag);
+
+        cache.invalidate();
+
+        assertThat(resourceVersions.referenceDataTag()).isNotEqualTo(tag);
+    }
+
+    private double counted(String result) {
+        return meterRegistry.get(ReferenceDataCache.METRIC_NAME).tag("result", result).functionCounter().count();
+    }
+}
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FriendGraphIndexTest {
+
+    private final FriendGraphIndex index = new FriendGraphIndex(null);
+
+    @Test
+    void suggestionsAreRankedByMutualFriends() {
+        index.addFriend(1, 2);
+        index.addFriend(1, 3);
+        index.addFriend(2, 3);
+        index.addFriend(2, 4);
+        index.addFriend(2, 5);
+        index.addFriend(3, 1);
+        index.addFriend(3, 5);
+
+        assertThat(index.getFriendSuggestionIds(1, 10)).containsExactly(5L, 4L);
+        assertThat(index.getFriendSuggestionIds(1, 1)).containsExactly(5L);
+    }
+
+    @Test
+    void hubThatDoesNotFitTheBudgetIsSkipped() {
+        index.addFriend(1, 2);
+        index.addFriend(1, 3);
+        index.addFriend(2, 10);
+        for (long friendId = 1_000_000; friendId < 2_000_000; friendId++) {
+            index.addFriend(3, friendId);
+        }
+
+        assertThat(index.getFriendSuggestionIds(1, 10)).containsExactly(10L);
+    }
+}